@@ -0,0 +1,167 @@
+package breakout;
+
+import java.awt.Canvas;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Toolkit;
+import java.awt.image.BufferStrategy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * An actively rendered alternative to GameView: a Canvas with a page-flipping BufferStrategy, drawn by its own
+ * render thread at the display's refresh rate instead of through Swing's (coalescing) repaint requests.
+ *
+ * The simulation runs on its own thread as for GameView, and the render thread only reads the frames it publishes.
+ * Rendering starts when the canvas becomes displayable and stops when it is removed; the simulation keeps running,
+ * so the game goes on when the canvas is added again.
+ */
+@SuppressWarnings("serial")
+public class ActiveGameView extends Canvas {
+
+	private final BreakoutState breakoutState;
+	private final SimulationLoop simulation;
+	private final FramePainter painter = new FramePainter();
+	private final CadenceStats frameStats = new CadenceStats();
+	private final long framePeriodNanos;
+	/**
+	 * The thread that renders into the current BufferStrategy, or null while the canvas is not displayable.
+	 * A render thread stops as soon as it is no longer this one.
+	 */
+	private volatile Thread renderThread;
+	/**
+	 * The last render thread started, which may still be finishing a frame. Only accessed by addNotify.
+	 */
+	private Thread lastRenderThread;
+
+	/**
+	 * Create a new ActiveGameView for playing breakout starting from a given breakoutState.
+	 * @param breakoutState initial state for the game.
+	 */
+	public ActiveGameView(BreakoutState breakoutState) {
+		this.breakoutState = breakoutState;
+		this.simulation = new SimulationLoop(breakoutState, Constants.BALL_DELAYMS, frame -> {});
+		this.framePeriodNanos = TimeUnit.SECONDS.toNanos(1) / FramePainter.refreshRate();
+
+		setBackground(Color.black);
+		setIgnoreRepaint(true);
+		addKeyListener(simulation.createKeyListener());
+	}
+
+	/**
+	 * Cadence and duration of the simulation ticks.
+	 */
+	CadenceStats getTickStats() {
+		return simulation.getTickStats();
+	}
+
+	/**
+	 * Frame times of the render loop, independent of the ticks.
+	 */
+	CadenceStats getFrameStats() {
+		return frameStats;
+	}
+
+	@Override
+	public Dimension getPreferredSize() {
+		return FramePainter.preferredSize(breakoutState.getBottomRight());
+	}
+
+	@Override
+	public boolean isFocusable() {
+		return true;
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		createBufferStrategy(2);
+		BufferStrategy strategy = getBufferStrategy();
+		Thread previous = lastRenderThread;
+		Thread thread = new Thread(() -> renderLoop(previous, strategy), "breakout-render");
+		thread.setDaemon(true);
+		renderThread = thread;
+		lastRenderThread = thread;
+		thread.start();
+		simulation.start();
+	}
+
+	/**
+	 * Only signals the render thread to stop: it may be waiting for the tree lock this method holds, in
+	 * getDrawGraphics or show, so waiting for it here could deadlock. The next render thread waits for it instead.
+	 */
+	@Override
+	public void removeNotify() {
+		Thread stopping = renderThread;
+		renderThread = null;
+		if (stopping != null) {
+			LockSupport.unpark(stopping);
+		}
+		super.removeNotify();
+	}
+
+	private void renderLoop(Thread previous, BufferStrategy strategy) {
+		// the painter is confined to one render thread at a time.
+		if (previous != null) {
+			try {
+				previous.join();
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+		Thread self = Thread.currentThread();
+		long deadline = System.nanoTime();
+		while (renderThread == self) {
+			long start = System.nanoTime();
+			RenderFrame frame = simulation.getLatestFrame();
+			try {
+				render(strategy, frame, frame.interpolationAt(start, simulation.getTickPeriod()));
+			} catch (RuntimeException e) {
+				if (renderThread == self) {
+					throw e;
+				}
+				break; // the canvas was removed while we were drawing, and the strategy with it.
+			}
+			frameStats.record(start, System.nanoTime());
+			if (frame.isDead() || frame.isWon()) {
+				SwingUtilities.invokeLater(() -> gameOver(frame));
+				break;
+			}
+			deadline += framePeriodNanos;
+			long now = System.nanoTime();
+			if (deadline < now) {
+				// we fell behind: do not try to catch up with a burst of frames.
+				deadline = now;
+			}
+			LockSupport.parkNanos(deadline - now);
+		}
+	}
+
+	private void render(BufferStrategy strategy, RenderFrame frame, double alpha) {
+		// the loops follow the BufferStrategy contract: the back buffer can be lost at any time.
+		do {
+			do {
+				Graphics g = strategy.getDrawGraphics();
+				try {
+					g.setColor(getBackground());
+					g.fillRect(0, 0, getWidth(), getHeight());
+					painter.paint(g, frame, alpha, breakoutState.getBottomRight());
+				} finally {
+					g.dispose();
+				}
+			} while (strategy.contentsRestored());
+			strategy.show();
+		} while (strategy.contentsLost());
+		Toolkit.getDefaultToolkit().sync();
+	}
+
+	private void gameOver(RenderFrame frame) {
+		JOptionPane.showMessageDialog(this, frame.isDead() ? "Game over :-(" : "Gewonnen!");
+		System.exit(0);
+	}
+
+}
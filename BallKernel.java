@@ -0,0 +1,139 @@
+package breakout;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * The bulk arithmetic of BallTable on its primitive columns: moving balls and finding the balls near the border
+ * of the field.
+ *
+ * When VectorBallKernel is on the class path (module breakout-vector) and the jdk.incubator.vector module is
+ * available (java --add-modules jdk.incubator.vector), whole lanes of balls are processed at once by VectorBallKernel;
+ * otherwise, or with -Dbreakout.scalar=true, the scalar loops below are used. Both give exactly the same results: int
+ * arithmetic wraps the same way in lanes as in scalars.
+ *
+ * VectorBallKernel is only reached through method handles, so that nothing else has to be compiled or run with the
+ * incubator module.
+ */
+final class BallKernel {
+
+	/**
+	 * VectorBallKernel.integrate and VectorBallKernel.borderCandidates, or null if VectorBallKernel is not used.
+	 */
+	private static final MethodHandle VECTOR_INTEGRATE;
+	private static final MethodHandle VECTOR_BORDER_CANDIDATES;
+
+	static {
+		MethodHandle integrate = null;
+		MethodHandle borderCandidates = null;
+		if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() && !Boolean.getBoolean("breakout.scalar")) {
+			try {
+				Class<?> kernel = Class.forName("breakout.VectorBallKernel");
+				MethodHandles.Lookup lookup = MethodHandles.lookup();
+				integrate = lookup.findStatic(kernel, "integrate", MethodType.methodType(void.class,
+						int[].class, int[].class, int[].class, int[].class, int.class, int.class));
+				borderCandidates = lookup.findStatic(kernel, "borderCandidates", MethodType.methodType(int.class,
+						int[].class, int[].class, int[].class, int.class, int.class, int.class, int[].class));
+			} catch (ReflectiveOperationException e) {
+				// breakout-vector is not on the class path
+				integrate = null;
+				borderCandidates = null;
+			}
+		}
+		VECTOR_INTEGRATE = integrate;
+		VECTOR_BORDER_CANDIDATES = borderCandidates;
+	}
+
+	/**
+	 * Whether VectorBallKernel is used. VectorBallKernel is not even loaded otherwise.
+	 */
+	static final boolean VECTORIZED = VECTOR_INTEGRATE != null;
+
+	private BallKernel() { throw new AssertionError("This class is not intended to be instantiated"); }
+
+	/**
+	 * Move balls 0 to n - 1 by their velocity times elapsedTime.
+	 *
+	 * @pre | 0 <= n && n <= x.length && n <= y.length && n <= vx.length && n <= vy.length
+	 * @mutates | x, y
+	 */
+	static void integrate(int[] x, int[] y, int[] vx, int[] vy, int n, int elapsedTime) {
+		if (VECTORIZED) {
+			integrateVector(x, y, vx, vy, n, elapsedTime);
+		} else {
+			integrate(x, y, vx, vy, 0, n, elapsedTime);
+		}
+	}
+
+	/**
+	 * Write the indices of the balls among 0 to n - 1 whose bounding box touches or crosses the border of the
+	 * field [0, width] x [0, height] to out, in increasing order, and return their number.
+	 * See BallTable.touchesBorder.
+	 *
+	 * @pre | 0 <= n && n <= x.length && n <= y.length && n <= diameter.length && n <= out.length
+	 * @mutates | out
+	 * @post | 0 <= result && result <= n
+	 */
+	static int borderCandidates(int[] x, int[] y, int[] diameter, int n, int width, int height, int[] out) {
+		if (VECTORIZED) {
+			return borderCandidatesVector(x, y, diameter, n, width, height, out);
+		}
+		return borderCandidates(x, y, diameter, 0, n, width, height, out, 0);
+	}
+
+	/**
+	 * The VectorBallKernel version of integrate.
+	 *
+	 * @pre | VECTORIZED
+	 */
+	static void integrateVector(int[] x, int[] y, int[] vx, int[] vy, int n, int elapsedTime) {
+		try {
+			VECTOR_INTEGRATE.invokeExact(x, y, vx, vy, n, elapsedTime);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * The VectorBallKernel version of borderCandidates.
+	 *
+	 * @pre | VECTORIZED
+	 */
+	static int borderCandidatesVector(int[] x, int[] y, int[] diameter, int n, int width, int height, int[] out) {
+		try {
+			return (int) VECTOR_BORDER_CANDIDATES.invokeExact(x, y, diameter, n, width, height, out);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * The scalar version of integrate, for balls from to to - 1.
+	 */
+	static void integrate(int[] x, int[] y, int[] vx, int[] vy, int from, int to, int elapsedTime) {
+		for (int i = from; i < to; ++i) {
+			x[i] += vx[i] * elapsedTime;
+			y[i] += vy[i] * elapsedTime;
+		}
+	}
+
+	/**
+	 * The scalar version of borderCandidates, for balls from to to - 1, appending to the count indices already in out.
+	 */
+	static int borderCandidates(int[] x, int[] y, int[] diameter, int from, int to, int width, int height,
+			int[] out, int count) {
+		for (int i = from; i < to; ++i) {
+			int r = (diameter[i] + 1) / 2;
+			if (x[i] - r <= 0 || y[i] - r <= 0 || x[i] + r >= width || y[i] + r >= height) {
+				out[count++] = i;
+			}
+		}
+		return count;
+	}
+
+}
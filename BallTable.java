@@ -0,0 +1,504 @@
+package breakout;
+
+import java.util.Arrays;
+
+import breakout.radioactivity.Ball;
+import breakout.radioactivity.NormalBall;
+import breakout.radioactivity.SuperChargedBall;
+import breakout.utils.Circle;
+import breakout.utils.Point;
+import breakout.utils.Vector;
+
+/**
+ * Structure-of-arrays storage for the balls of a BreakoutState.
+ *
+ * The center, velocity, diameter and kind of ball i are kept in parallel primitive arrays,
+ * so the per-tick work (moving, border and overlap checks) runs over ints without touching the Ball objects.
+ *
+ * Each slot also keeps a Ball handle, which remains responsible for all ball behavior
+ * (hitWall, hitBlock, backToNormal, links to alphas, ...). The table owns the center of a ball:
+ * the handle's location is only written back (materialize) when the handle is actually needed,
+ * i.e. on a collision. After a behavior call, absorb reads the resulting state back into the arrays.
+ * Handles never leave the table: at the getBalls() boundary, copyAll creates fresh balls from the arrays.
+ *
+ * Normal balls are moved by the primitive path. Other kinds (supercharged balls, which keep a lifetime)
+ * are always moved through their handle, as is every ball when the table is in object path mode.
+ * Both paths yield the same balls.
+ *
+ * @invar | 0 <= size()
+ */
+class BallTable {
+
+	static final byte NORMAL = 0;
+	static final byte SUPERCHARGED = 1;
+
+	private static final int MIN_CAPACITY = 4;
+
+	/**
+	 * handles[i] == null iff slot i was cleared and awaits compaction.
+	 *
+	 * @representationObject
+	 */
+	private Ball[] handles;
+	/**
+	 * @representationObject
+	 */
+	private int[] x;
+	private int[] y;
+	private int[] vx;
+	private int[] vy;
+	private int[] diameter;
+	private byte[] kind;
+	/**
+	 * Remaining lifetime (ms) of supercharged balls, 0 for normal balls. Kept up to date by absorb.
+	 */
+	private int[] lifetime;
+	/**
+	 * The sum of the StateHash.ball keys of the live slots, kept up to date by every change to the arrays,
+	 * unless hashStale.
+	 */
+	private long hash;
+	/**
+	 * Set when integrate moved the balls in bulk without updating the hash: getHash recomputes it.
+	 */
+	private boolean hashStale;
+	/**
+	 * Scratch buffer of queryBorder. Only the first candidateCount elements are in use.
+	 *
+	 * @representationObject
+	 */
+	private int[] candidates;
+	private int candidateCount;
+	/**
+	 * stale[i] iff the location of handles[i] lags behind x[i], y[i].
+	 */
+	private boolean[] stale;
+	private int size;
+	/**
+	 * The number of slots that are not cleared, maintained by add and clear.
+	 *
+	 * @invar | 0 <= liveCount && liveCount <= size
+	 */
+	private int liveCount;
+	/**
+	 * Changes whenever a ball is added or a slot is cleared, i.e. whenever an index may come to designate another
+	 * ball.
+	 */
+	private int layoutVersion;
+
+	/**
+	 * When set, every ball goes through its handle, as if there were no primitive arrays.
+	 */
+	private boolean objectPath;
+
+	/**
+	 * @pre | balls != null
+	 * @pre | Arrays.stream(balls).allMatch(b -> b != null)
+	 * @post | size() == balls.length
+	 */
+	BallTable(Ball[] balls) {
+		int capacity = Math.max(MIN_CAPACITY, balls.length);
+		handles = new Ball[capacity];
+		x = new int[capacity];
+		y = new int[capacity];
+		vx = new int[capacity];
+		vy = new int[capacity];
+		diameter = new int[capacity];
+		kind = new byte[capacity];
+		lifetime = new int[capacity];
+		stale = new boolean[capacity];
+		candidates = new int[capacity];
+		for (Ball ball : balls) {
+			add(ball);
+		}
+	}
+
+	/**
+	 * A table with the same balls as this one, sharing nothing with it: every live ball gets a fresh handle
+	 * (a NormalBall or a SuperChargedBall, after its kind) without links, created from the primitive columns.
+	 * Cleared slots stay cleared.
+	 *
+	 * @creates | result
+	 * @post | result.size() == size()
+	 */
+	BallTable copy() {
+		BallTable res = new BallTable(new Ball[0]);
+		int capacity = Math.max(MIN_CAPACITY, size);
+		res.handles = new Ball[capacity];
+		res.x = Arrays.copyOf(x, capacity);
+		res.y = Arrays.copyOf(y, capacity);
+		res.vx = Arrays.copyOf(vx, capacity);
+		res.vy = Arrays.copyOf(vy, capacity);
+		res.diameter = Arrays.copyOf(diameter, capacity);
+		res.kind = Arrays.copyOf(kind, capacity);
+		res.lifetime = Arrays.copyOf(lifetime, capacity);
+		res.stale = new boolean[capacity];
+		res.candidates = new int[capacity];
+		res.size = size;
+		res.liveCount = liveCount;
+		res.layoutVersion = layoutVersion;
+		res.hash = hash;
+		res.hashStale = hashStale;
+		res.objectPath = objectPath;
+		for (int i = 0; i < size; ++i) {
+			if (handles[i] != null) {
+				res.handles[i] = copyBall(i);
+			}
+		}
+		return res;
+	}
+
+	// a fresh ball (a NormalBall or a SuperChargedBall, after its kind) without links, created from the arrays.
+	private Ball copyBall(int i) {
+		Circle location = new Circle(new Point(x[i], y[i]), diameter[i]);
+		Vector velocity = new Vector(vx[i], vy[i]);
+		return kind[i] == SUPERCHARGED
+				? new SuperChargedBall(location, velocity, lifetime[i])
+				: new NormalBall(location, velocity);
+	}
+
+	/**
+	 * A hash of the live balls (their center, velocity, diameter, kind and lifetime), maintained in O(1) per change.
+	 * It does not depend on the order of the balls.
+	 * After a bulk integrate, it is recomputed in O(size()) on the first call.
+	 */
+	long getHash() {
+		if (hashStale) {
+			hash = 0;
+			for (int i = 0; i < size; ++i) {
+				if (handles[i] != null) {
+					hash += key(i);
+				}
+			}
+			hashStale = false;
+		}
+		return hash;
+	}
+
+	private long key(int i) {
+		return StateHash.ball(x[i], y[i], vx[i], vy[i], diameter[i], kind[i], lifetime[i]);
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * A number that changes whenever a ball is added or a slot is cleared.
+	 */
+	int getLayoutVersion() {
+		return layoutVersion;
+	}
+
+	/**
+	 * The number of balls that were not cleared. Equals size() outside of a tick.
+	 */
+	int getLiveCount() {
+		return liveCount;
+	}
+
+	boolean isObjectPath() {
+		return objectPath;
+	}
+
+	/**
+	 * Switch between the primitive path and the per-object path. Meant for benchmarks and tests.
+	 *
+	 * @mutates | this
+	 */
+	void setObjectPath(boolean objectPath) {
+		this.objectPath = objectPath;
+	}
+
+	boolean isLive(int i) {
+		return handles[i] != null;
+	}
+
+	int getX(int i) {
+		return x[i];
+	}
+
+	int getY(int i) {
+		return y[i];
+	}
+
+	int getVelocityX(int i) {
+		return vx[i];
+	}
+
+	int getVelocityY(int i) {
+		return vy[i];
+	}
+
+	int getDiameter(int i) {
+		return diameter[i];
+	}
+
+	byte getKind(int i) {
+		return kind[i];
+	}
+
+	int getLifetime(int i) {
+		return lifetime[i];
+	}
+
+	int getRadius(int i) {
+		return (diameter[i] + 1) / 2;
+	}
+
+	/**
+	 * Whether the bounding box of ball i touches or crosses the border of the field from the origin to bottomRight.
+	 * This is a superset of the cases where ball i collides with a wall or must be clamped.
+	 */
+	boolean touchesBorder(int i, Point bottomRight) {
+		int r = getRadius(i);
+		return x[i] - r <= 0 || y[i] - r <= 0
+				|| x[i] + r >= bottomRight.getX() || y[i] + r >= bottomRight.getY();
+	}
+
+	/**
+	 * Find the balls whose bounding box touches or crosses the border of the field from the origin to bottomRight
+	 * (see touchesBorder), or all balls in object path mode, including cleared slots.
+	 * Returns their number; getCandidate(k) is the k-th of them, in increasing order.
+	 *
+	 * @mutates | this
+	 * @post | 0 <= result && result <= size()
+	 */
+	int queryBorder(Point bottomRight) {
+		if (objectPath) {
+			for (int i = 0; i < size; ++i) {
+				candidates[i] = i;
+			}
+			candidateCount = size;
+		} else {
+			candidateCount = BallKernel.borderCandidates(x, y, diameter, size, bottomRight.getX(), bottomRight.getY(),
+					candidates);
+		}
+		return candidateCount;
+	}
+
+	/**
+	 * @pre | 0 <= k && k < the result of the last queryBorder
+	 */
+	int getCandidate(int k) {
+		return candidates[k];
+	}
+
+	/**
+	 * Whether the bounding box of ball i overlaps the box [left, right] x [top, bottom] (bounds included).
+	 */
+	boolean overlaps(int i, int left, int top, int right, int bottom) {
+		int r = getRadius(i);
+		return x[i] + r >= left && x[i] - r <= right && y[i] + r >= top && y[i] - r <= bottom;
+	}
+
+	/**
+	 * Append a ball.
+	 *
+	 * @pre | ball != null
+	 * @mutates | this
+	 */
+	void add(Ball ball) {
+		if (size == handles.length) {
+			grow();
+		}
+		handles[size] = ball;
+		load(size);
+		hash += key(size);
+		size++;
+		liveCount++;
+		layoutVersion++;
+	}
+
+	private void grow() {
+		int capacity = 2 * handles.length;
+		handles = Arrays.copyOf(handles, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+		vx = Arrays.copyOf(vx, capacity);
+		vy = Arrays.copyOf(vy, capacity);
+		diameter = Arrays.copyOf(diameter, capacity);
+		kind = Arrays.copyOf(kind, capacity);
+		lifetime = Arrays.copyOf(lifetime, capacity);
+		stale = Arrays.copyOf(stale, capacity);
+		candidates = new int[capacity];
+	}
+
+	/**
+	 * Returns the handle of ball i as is: its location may lag behind, everything else is up to date.
+	 * Callers must not change it.
+	 *
+	 * @pre | isLive(i)
+	 */
+	Ball getHandle(int i) {
+		return handles[i];
+	}
+
+	/**
+	 * Returns the handle of ball i, with its location brought up to date.
+	 * Callers that change the handle must call absorb(i) (or set) afterwards.
+	 *
+	 * @pre | isLive(i)
+	 * @post | result != null
+	 */
+	Ball materialize(int i) {
+		if (stale[i]) {
+			handles[i].setLocation(new Circle(new Point(x[i], y[i]), diameter[i]));
+			stale[i] = false;
+		}
+		return handles[i];
+	}
+
+	/**
+	 * Read the state of handle i back into the arrays.
+	 *
+	 * @pre | isLive(i)
+	 * @mutates | this
+	 */
+	void absorb(int i) {
+		hash -= key(i);
+		load(i);
+		hash += key(i);
+	}
+
+	private void load(int i) {
+		Ball ball = handles[i];
+		Circle loc = ball.getLocation();
+		Vector vel = ball.getVelocity();
+		x[i] = loc.getCenter().getX();
+		y[i] = loc.getCenter().getY();
+		diameter[i] = loc.getDiameter();
+		vx[i] = vel.getX();
+		vy[i] = vel.getY();
+		if (ball instanceof SuperChargedBall) {
+			kind[i] = SUPERCHARGED;
+			lifetime[i] = ((SuperChargedBall) ball).getLifetime();
+		} else {
+			kind[i] = NORMAL;
+			lifetime[i] = 0;
+		}
+		stale[i] = false;
+	}
+
+	/**
+	 * Replace ball i, e.g. by the ball state resulting from a hit.
+	 *
+	 * @pre | ball != null
+	 * @mutates | this
+	 */
+	void set(int i, Ball ball) {
+		handles[i] = ball;
+		absorb(i);
+	}
+
+	/**
+	 * Clear slot i. The slot is dropped by the next compact().
+	 *
+	 * @mutates | this
+	 */
+	void clear(int i) {
+		if (handles[i] != null) {
+			hash -= key(i);
+			handles[i] = null;
+			liveCount--;
+			layoutVersion++;
+		}
+	}
+
+	/**
+	 * Drop the cleared slots, keeping the order of the remaining balls.
+	 * The links of the balls are renumbered along (and dropped for cleared slots).
+	 *
+	 * @pre | links != null
+	 * @mutates | this
+	 * @mutates | links
+	 */
+	void compact(LinkGraph links) {
+		int j = 0;
+		for (int i = 0; i < size; ++i) {
+			if (handles[i] == null) {
+				links.clearBall(i);
+			} else {
+				if (i != j) {
+					links.moveBall(i, j);
+					handles[j] = handles[i];
+					x[j] = x[i];
+					y[j] = y[i];
+					vx[j] = vx[i];
+					vy[j] = vy[i];
+					diameter[j] = diameter[i];
+					kind[j] = kind[i];
+					lifetime[j] = lifetime[i];
+					stale[j] = stale[i];
+				}
+				j++;
+			}
+		}
+		Arrays.fill(handles, j, size, null);
+		size = j;
+	}
+
+	/**
+	 * Move every ball by its velocity times elapsedTime.
+	 * The primitive columns are moved in bulk by BallKernel, after which the balls that take the object path
+	 * are moved again, from their handle's location: their columns are overwritten by absorb.
+	 *
+	 * @pre | elapsedTime >= 0
+	 * @mutates | this
+	 */
+	void integrate(int elapsedTime) {
+		if (objectPath) {
+			for (int i = 0; i < size; ++i) {
+				integrate(i, elapsedTime);
+			}
+			return;
+		}
+		BallKernel.integrate(x, y, vx, vy, size, elapsedTime);
+		hashStale = true;
+		for (int i = 0; i < size; ++i) {
+			if (kind[i] != NORMAL) {
+				// never stale, so materialize keeps the location from before the bulk move
+				Ball ball = materialize(i);
+				ball.move(ball.getVelocity().scaled(elapsedTime), elapsedTime);
+				absorb(i);
+			} else {
+				stale[i] = true;
+			}
+		}
+	}
+
+	/**
+	 * Move ball i by its velocity times elapsedTime.
+	 *
+	 * @pre | elapsedTime >= 0
+	 * @mutates | this
+	 */
+	void integrate(int i, int elapsedTime) {
+		if (objectPath || kind[i] != NORMAL) {
+			Ball ball = materialize(i);
+			ball.move(ball.getVelocity().scaled(elapsedTime), elapsedTime);
+			absorb(i);
+		} else {
+			hash -= key(i);
+			x[i] += vx[i] * elapsedTime;
+			y[i] += vy[i] * elapsedTime;
+			hash += key(i);
+			stale[i] = true;
+		}
+	}
+
+	/**
+	 * Returns fresh copies of all balls, in order, without links: changing them does not change this table.
+	 *
+	 * @pre | getLiveCount() == size()
+	 * @creates | result, ...result
+	 */
+	Ball[] copyAll() {
+		Ball[] res = new Ball[size];
+		for (int i = 0; i < size; ++i) {
+			res[i] = copyBall(i);
+		}
+		return res;
+	}
+
+}
@@ -0,0 +1,230 @@
+package breakout;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Advances many independent BreakoutStates in parallel, for headless regression runs.
+ *
+ * The games are split recursively into chunks that are run as ForkJoin tasks, so idle workers steal
+ * the chunks of busy ones (e.g. when most games of a chunk die early). Each leaf task runs its games
+ * one after the other for all requested ticks, which keeps one game's data hot in the cache.
+ * Games never share mutable state, so no synchronization is needed beyond the final join.
+ */
+public class BatchSimulator {
+
+	/**
+	 * Supplies the paddle direction of one game, tick by tick.
+	 */
+	@FunctionalInterface
+	public interface InputSource {
+
+		/**
+		 * Returns the paddle direction for the given tick of the given game.
+		 *
+		 * @post | result == -1 || result == 0 || result == 1
+		 */
+		int paddleDir(BreakoutState state, int tick);
+	}
+
+	/**
+	 * The state a game ended up in.
+	 */
+	public enum Outcome { WON, DEAD, RUNNING }
+
+	/**
+	 * The outcome of a batch run.
+	 *
+	 * @immutable
+	 */
+	public static class Result {
+
+		private final Outcome[] outcomes;
+		private final int[] ticksRun;
+		private final long totalTicks;
+		private final long elapsedNanos;
+
+		private Result(Outcome[] outcomes, int[] ticksRun, long totalTicks, long elapsedNanos) {
+			this.outcomes = outcomes;
+			this.ticksRun = ticksRun;
+			this.totalTicks = totalTicks;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/**
+		 * @creates | result
+		 */
+		public Outcome[] getOutcomes() {
+			return outcomes.clone();
+		}
+
+		/**
+		 * The number of ticks game i ran before it was won, lost or the run ended.
+		 */
+		public int getTicksRun(int i) {
+			return ticksRun[i];
+		}
+
+		/**
+		 * The number of ticks run over all games.
+		 */
+		public long getTotalTicks() {
+			return totalTicks;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * Aggregate throughput, over all games.
+		 */
+		public double getTicksPerSecond() {
+			return elapsedNanos == 0 ? 0 : totalTicks * 1e9 / elapsedNanos;
+		}
+
+		public int count(Outcome outcome) {
+			int res = 0;
+			for (Outcome o : outcomes) {
+				if (o == outcome) { res++; }
+			}
+			return res;
+		}
+	}
+
+	/**
+	 * Aim for this many chunks per worker, so that work stealing can even out games of unequal length.
+	 */
+	private static final int CHUNKS_PER_WORKER = 8;
+
+	private final ForkJoinPool pool;
+	private final int tickDuration;
+
+	/**
+	 * A simulator running on the common pool, with ticks of Constants.BALL_DELAYMS.
+	 */
+	public BatchSimulator() {
+		this(ForkJoinPool.commonPool(), Constants.BALL_DELAYMS);
+	}
+
+	/**
+	 * @throws IllegalArgumentException | pool == null
+	 * @throws IllegalArgumentException | tickDuration <= 0 || tickDuration > Constants.MAX_ELAPSED_TIME
+	 */
+	public BatchSimulator(ForkJoinPool pool, int tickDuration) {
+		if (pool == null)
+			throw new IllegalArgumentException();
+		if (tickDuration <= 0 || tickDuration > Constants.MAX_ELAPSED_TIME)
+			throw new IllegalArgumentException();
+		this.pool = pool;
+		this.tickDuration = tickDuration;
+	}
+
+	/**
+	 * Advance every game by at most `ticks` ticks, driven by its own input source.
+	 * A game stops as soon as it is won or lost. A game that is already won or lost is not ticked at all:
+	 * its outcome is recorded with 0 ticks run.
+	 *
+	 * @throws IllegalArgumentException | games == null || inputs == null
+	 * @throws IllegalArgumentException | games.length != inputs.length
+	 * @throws IllegalArgumentException | ticks < 0
+	 * @mutates | ...games
+	 * @post | result.getOutcomes().length == games.length
+	 */
+	public Result run(BreakoutState[] games, InputSource[] inputs, int ticks) {
+		if (games == null || inputs == null)
+			throw new IllegalArgumentException();
+		if (games.length != inputs.length)
+			throw new IllegalArgumentException();
+		if (ticks < 0)
+			throw new IllegalArgumentException();
+
+		Outcome[] outcomes = new Outcome[games.length];
+		int[] ticksRun = new int[games.length];
+		AtomicLong totalTicks = new AtomicLong();
+		int chunk = Math.max(1, games.length / (pool.getParallelism() * CHUNKS_PER_WORKER));
+
+		long start = System.nanoTime();
+		pool.invoke(new Chunk(games, inputs, ticks, outcomes, ticksRun, totalTicks, 0, games.length, chunk));
+		long elapsed = System.nanoTime() - start;
+		return new Result(outcomes, ticksRun, totalTicks.get(), elapsed);
+	}
+
+	@SuppressWarnings("serial")
+	private class Chunk extends RecursiveAction {
+
+		private final BreakoutState[] games;
+		private final InputSource[] inputs;
+		private final int ticks;
+		private final Outcome[] outcomes;
+		private final int[] ticksRun;
+		private final AtomicLong totalTicks;
+		private final int from;
+		private final int to;
+		private final int chunk;
+
+		Chunk(BreakoutState[] games, InputSource[] inputs, int ticks, Outcome[] outcomes, int[] ticksRun,
+				AtomicLong totalTicks, int from, int to, int chunk) {
+			this.games = games;
+			this.inputs = inputs;
+			this.ticks = ticks;
+			this.outcomes = outcomes;
+			this.ticksRun = ticksRun;
+			this.totalTicks = totalTicks;
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunk) {
+				long done = 0;
+				for (int i = from; i < to; ++i) {
+					done += runGame(i);
+				}
+				//one contended update per chunk, not per tick.
+				totalTicks.addAndGet(done);
+			} else {
+				int mid = (from + to) >>> 1;
+				invokeAll(
+						new Chunk(games, inputs, ticks, outcomes, ticksRun, totalTicks, from, mid, chunk),
+						new Chunk(games, inputs, ticks, outcomes, ticksRun, totalTicks, mid, to, chunk));
+			}
+		}
+
+		private int runGame(int i) {
+			BreakoutState game = games[i];
+			InputSource input = inputs[i];
+			int t = 0;
+			Outcome outcome = outcomeOf(game);
+			while (outcome == Outcome.RUNNING && t < ticks) {
+				int paddleDir = input.paddleDir(game, t);
+				// the paddle moves the way GameView moves it.
+				if (paddleDir < 0) {
+					game.movePaddleLeft(tickDuration);
+				} else if (paddleDir > 0) {
+					game.movePaddleRight(tickDuration);
+				}
+				game.tick(paddleDir, tickDuration);
+				t++;
+				outcome = outcomeOf(game);
+			}
+			outcomes[i] = outcome;
+			ticksRun[i] = t;
+			return t;
+		}
+	}
+
+	private static Outcome outcomeOf(BreakoutState game) {
+		if (game.isDead()) {
+			return Outcome.DEAD;
+		}
+		if (game.isWon()) {
+			return Outcome.WON;
+		}
+		return Outcome.RUNNING;
+	}
+
+}
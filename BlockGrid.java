@@ -0,0 +1,345 @@
+package breakout;
+
+import java.util.Arrays;
+
+import breakout.utils.Circle;
+import breakout.utils.Point;
+import breakout.utils.Rect;
+
+/**
+ * A uniform grid over the game field, indexing block rectangles by integer id.
+ *
+ * The field is cut into cells of cellWidth x cellHeight (typically Constants.BLOCK_WIDTH x Constants.BLOCK_HEIGHT,
+ * the layout GameMap uses). A rectangle is registered in every cell it overlaps, so arbitrary rects
+ * (spanning several cells, or not aligned with the layout) are supported.
+ * Rects sticking out of the field are folded into the border cells.
+ *
+ * A query returns the ids of all rects registered in the cells overlapping a given box,
+ * without duplicates and in increasing id order.
+ * Queries do not allocate (apart from growing internal buffers).
+ *
+ * A grid can be forked in O(1): the fork shares the cells with its source until either of them registers or
+ * unregisters a rect, which first copies the cells (copy on write). Each has its own query buffers.
+ *
+ * @invar | getColumns() > 0
+ * @invar | getRows() > 0
+ */
+class BlockGrid {
+
+	private static final int INIT_CELL_CAPACITY = 4;
+	/**
+	 * Queries that find more registrations than this dedup them with marks instead of an insertion sort.
+	 */
+	private static final int SORTED_INSERT_LIMIT = 32;
+
+	private final int cellWidth;
+	private final int cellHeight;
+	private final int columns;
+	private final int rows;
+
+	/**
+	 * cells[row * columns + column] holds the ids registered in that cell, in its first cellSizes[...] entries.
+	 *
+	 * @invar | cells != null
+	 * @invar | cellSizes != null && cellSizes.length == cells.length
+	 * @representationObject
+	 */
+	private int[][] cells;
+	private int[] cellSizes;
+	/**
+	 * Whether cells and cellSizes may be shared with a fork, so they must be copied before they are changed.
+	 */
+	private boolean shared;
+
+	/**
+	 * @representationObject
+	 */
+	private int[] candidates;
+	private int candidateCount;
+	/**
+	 * marks[id] == mark if id was already collected by the current large query, see collectMarked.
+	 * Like the candidates, the marks belong to the queries of this grid only: forks start without them.
+	 *
+	 * @representationObject
+	 */
+	private int[] marks = new int[0];
+	private int mark;
+
+	/**
+	 * Construct an empty grid covering the field from the origin to bottomRight.
+	 *
+	 * @throws IllegalArgumentException | bottomRight == null
+	 * @throws IllegalArgumentException | cellWidth <= 0 || cellHeight <= 0
+	 * @post | getCandidateCount() == 0
+	 */
+	BlockGrid(Point bottomRight, int cellWidth, int cellHeight) {
+		if (bottomRight == null)
+			throw new IllegalArgumentException();
+		if (cellWidth <= 0 || cellHeight <= 0)
+			throw new IllegalArgumentException();
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+		this.columns = Math.max(1, (bottomRight.getX() + cellWidth - 1) / cellWidth);
+		this.rows = Math.max(1, (bottomRight.getY() + cellHeight - 1) / cellHeight);
+		this.cells = new int[columns * rows][];
+		this.cellSizes = new int[columns * rows];
+		this.candidates = new int[16];
+	}
+
+	private BlockGrid(BlockGrid source) {
+		this.cellWidth = source.cellWidth;
+		this.cellHeight = source.cellHeight;
+		this.columns = source.columns;
+		this.rows = source.rows;
+		this.cells = source.cells;
+		this.cellSizes = source.cellSizes;
+		this.shared = true;
+		this.candidates = new int[16];
+	}
+
+	/**
+	 * A grid with the same rects as this one, that shares them with this grid until either grid changes.
+	 *
+	 * @mutates | this
+	 * @post | result.getCandidateCount() == 0
+	 */
+	BlockGrid fork() {
+		shared = true;
+		return new BlockGrid(this);
+	}
+
+	private void unshare() {
+		if (shared) {
+			cells = cells.clone();
+			for (int cell = 0; cell < cells.length; ++cell) {
+				if (cells[cell] != null) {
+					cells[cell] = cells[cell].clone();
+				}
+			}
+			cellSizes = cellSizes.clone();
+			shared = false;
+		}
+	}
+
+	int getColumns() {
+		return columns;
+	}
+
+	int getRows() {
+		return rows;
+	}
+
+	private int column(int x) {
+		if (x < 0) { return 0; }
+		return Math.min(x / cellWidth, columns - 1);
+	}
+
+	private int row(int y) {
+		if (y < 0) { return 0; }
+		return Math.min(y / cellHeight, rows - 1);
+	}
+
+	/**
+	 * Register rect r under the given id.
+	 *
+	 * @pre | id >= 0
+	 * @pre | r != null
+	 * @mutates | this
+	 */
+	void insert(int id, Rect r) {
+		insert(id, r.getTopLeft().getX(), r.getTopLeft().getY(), r.getBottomRight().getX(), r.getBottomRight().getY());
+	}
+
+	/**
+	 * Register the box [left, right] x [top, bottom] under the given id.
+	 *
+	 * @pre | id >= 0
+	 * @mutates | this
+	 */
+	void insert(int id, int left, int top, int right, int bottom) {
+		unshare();
+		int c0 = column(left);
+		int c1 = column(right);
+		int r0 = row(top);
+		int r1 = row(bottom);
+		for (int row = r0; row <= r1; ++row) {
+			for (int col = c0; col <= c1; ++col) {
+				add(row * columns + col, id);
+			}
+		}
+	}
+
+	/**
+	 * Unregister the id that was registered with rect r.
+	 *
+	 * @pre | r != null
+	 * @mutates | this
+	 */
+	void remove(int id, Rect r) {
+		remove(id, r.getTopLeft().getX(), r.getTopLeft().getY(), r.getBottomRight().getX(), r.getBottomRight().getY());
+	}
+
+	/**
+	 * Unregister the id that was registered with the box [left, right] x [top, bottom].
+	 *
+	 * @mutates | this
+	 */
+	void remove(int id, int left, int top, int right, int bottom) {
+		unshare();
+		int c0 = column(left);
+		int c1 = column(right);
+		int r0 = row(top);
+		int r1 = row(bottom);
+		for (int row = r0; row <= r1; ++row) {
+			for (int col = c0; col <= c1; ++col) {
+				delete(row * columns + col, id);
+			}
+		}
+	}
+
+	private void add(int cell, int id) {
+		int[] ids = cells[cell];
+		if (ids == null) {
+			ids = new int[INIT_CELL_CAPACITY];
+			cells[cell] = ids;
+		} else if (cellSizes[cell] == ids.length) {
+			int[] nids = new int[ids.length * 2];
+			System.arraycopy(ids, 0, nids, 0, ids.length);
+			ids = nids;
+			cells[cell] = ids;
+		}
+		ids[cellSizes[cell]++] = id;
+	}
+
+	private void delete(int cell, int id) {
+		int[] ids = cells[cell];
+		int size = cellSizes[cell];
+		for (int i = 0; i < size; ++i) {
+			if (ids[i] == id) {
+				//order within a cell is irrelevant, queries sort their result.
+				ids[i] = ids[size - 1];
+				cellSizes[cell] = size - 1;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Collect the ids of the rects that may overlap the box [left, right] x [top, bottom] (bounds included).
+	 * The result is retrieved with getCandidateCount() and getCandidate(k), in increasing id order.
+	 *
+	 * @mutates | this
+	 * @post | result == getCandidateCount()
+	 */
+	int query(int left, int top, int right, int bottom) {
+		candidateCount = 0;
+		int c0 = column(left);
+		int c1 = column(right);
+		int r0 = row(top);
+		int r1 = row(bottom);
+		int found = 0;
+		for (int row = r0; row <= r1; ++row) {
+			for (int col = c0; col <= c1; ++col) {
+				found += cellSizes[row * columns + col];
+			}
+		}
+		if (found > SORTED_INSERT_LIMIT) {
+			collectMarked(c0, c1, r0, r1);
+			return candidateCount;
+		}
+		for (int row = r0; row <= r1; ++row) {
+			for (int col = c0; col <= c1; ++col) {
+				int cell = row * columns + col;
+				int[] ids = cells[cell];
+				for (int i = 0; i < cellSizes[cell]; ++i) {
+					pushCandidate(ids[i]);
+				}
+			}
+		}
+		return candidateCount;
+	}
+
+	// many registrations: mark each id the first time it is found, so duplicates are dropped in O(1), then sort
+	// once. That is O(k log k) in the number k of registrations found, where pushCandidate is O(k^2).
+	private void collectMarked(int c0, int c1, int r0, int r1) {
+		if (++mark == 0) { //wrapped around: old marks could match again
+			Arrays.fill(marks, 0);
+			mark = 1;
+		}
+		for (int row = r0; row <= r1; ++row) {
+			for (int col = c0; col <= c1; ++col) {
+				int cell = row * columns + col;
+				int[] ids = cells[cell];
+				for (int i = 0; i < cellSizes[cell]; ++i) {
+					int id = ids[i];
+					if (id >= marks.length) {
+						marks = Arrays.copyOf(marks, Math.max(id + 1, 2 * marks.length));
+					}
+					if (marks[id] != mark) {
+						marks[id] = mark;
+						appendCandidate(id);
+					}
+				}
+			}
+		}
+		Arrays.sort(candidates, 0, candidateCount);
+	}
+
+	private void appendCandidate(int id) {
+		if (candidateCount == candidates.length) {
+			candidates = Arrays.copyOf(candidates, candidates.length * 2);
+		}
+		candidates[candidateCount++] = id;
+	}
+
+	/**
+	 * Collect the ids of the rects that may overlap the bounding box of circle c.
+	 *
+	 * @pre | c != null
+	 * @mutates | this
+	 * @post | result == getCandidateCount()
+	 */
+	int query(Circle c) {
+		int cx = c.getCenter().getX();
+		int cy = c.getCenter().getY();
+		int radius = (c.getDiameter() + 1) / 2;
+		return query(cx - radius, cy - radius, cx + radius, cy + radius);
+	}
+
+	// insertion sort keeps the candidates ordered and drops the ids of rects spanning several cells that were
+	// already found. Only used for small queries (see query), where it is cheaper than marking.
+	private void pushCandidate(int id) {
+		int i = candidateCount;
+		while (i > 0 && candidates[i - 1] > id) {
+			--i;
+		}
+		if (i > 0 && candidates[i - 1] == id) {
+			return;
+		}
+		if (candidateCount == candidates.length) {
+			int[] ncandidates = new int[candidates.length * 2];
+			System.arraycopy(candidates, 0, ncandidates, 0, candidates.length);
+			candidates = ncandidates;
+		}
+		System.arraycopy(candidates, i, candidates, i + 1, candidateCount - i);
+		candidates[i] = id;
+		candidateCount++;
+	}
+
+	/**
+	 * The number of ids found by the last query.
+	 */
+	int getCandidateCount() {
+		return candidateCount;
+	}
+
+	/**
+	 * The k-th id (in increasing order) found by the last query.
+	 *
+	 * @pre | 0 <= k && k < getCandidateCount()
+	 */
+	int getCandidate(int k) {
+		return candidates[k];
+	}
+
+}
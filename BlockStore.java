@@ -0,0 +1,491 @@
+package breakout;
+
+import java.util.Arrays;
+
+import breakout.utils.Circle;
+import breakout.utils.Point;
+import breakout.utils.Rect;
+
+/**
+ * Mutable storage for the blocks of a BreakoutState.
+ *
+ * Blocks live in slots. Hitting a block replaces or clears (tombstones) its slot in O(1),
+ * instead of rebuilding the whole block array. The live blocks, in slot order, form the
+ * compacted snapshot returned by snapshot(); it is rebuilt lazily, only when it is asked for
+ * after a change. Slots are compacted once tombstones outnumber the live blocks.
+ *
+ * Each slot is packed into parallel primitive columns: the corners of the block, a type code and the lives of
+ * sturdy blocks. Collision scans (getLeft, ..., overlaps) run over these columns without touching any object.
+ * The BlockState objects are only a cache: get(slot) materializes the block of a slot from its columns the first
+ * time it is needed, e.g. for its behavior hooks or for getBlocks(). Blocks handed to the store are kept as they
+ * are; blocks of a type that cannot be packed (subclasses, sturdy blocks with more lives than a byte holds) are
+ * always kept, with type code OTHER.
+ *
+ * The store also maintains a BlockGrid over the live slots, so collision candidates can be looked up by location.
+ *
+ * Blocks are immutable, so a store can be forked in O(1): the fork shares the slots and the grid with its source,
+ * and whichever store changes first copies them (copy on write). Unchanged forks only copy the slots, the first time
+ * they materialize a block.
+ *
+ * @invar | getLiveCount() >= 0
+ * @invar | getLiveCount() <= getSlotCount()
+ */
+class BlockStore {
+
+	/**
+	 * The type code of a tombstone.
+	 */
+	static final byte NONE = 0;
+	static final byte NORMAL = 1;
+	static final byte STURDY = 2;
+	static final byte REPLICATOR = 3;
+	static final byte POWERUP = 4;
+	/**
+	 * A block that is only known as an object, see get.
+	 */
+	static final byte OTHER = 5;
+
+	/**
+	 * Compaction is not worth it below this number of tombstones.
+	 */
+	private static final int MIN_TOMBSTONES_BEFORE_COMPACTION = 16;
+
+	private final Point bottomRight;
+
+	/**
+	 * type[i] == NONE iff slot i is a tombstone. All columns have getSlotCount() elements.
+	 *
+	 * @invar | type != null
+	 * @representationObject
+	 */
+	private byte[] type;
+	/**
+	 * @representationObject
+	 */
+	private int[] left;
+	private int[] top;
+	private int[] right;
+	private int[] bottom;
+	/**
+	 * The lives left of sturdy blocks, 0 for other blocks.
+	 */
+	private byte[] lives;
+	/**
+	 * slots[i] is the block in slot i, or null if it is a tombstone or was not materialized yet.
+	 * Never null for type code OTHER.
+	 *
+	 * @invar | slots != null
+	 * @representationObject
+	 */
+	private BlockState[] slots;
+	/**
+	 * Whether the columns and slots may be shared with a fork, so they must be copied before they are changed.
+	 */
+	private boolean shared;
+	/**
+	 * Whether slots may be shared with a fork. Forks may run on other threads, so even materializing a block
+	 * into a shared slot would race with them: get copies the slots first.
+	 */
+	private boolean slotsShared;
+	private int liveCount;
+	/**
+	 * Incremented by every change to the blocks.
+	 */
+	private int version;
+	/**
+	 * The sum of StateHash.block over the live blocks, kept up to date by every change.
+	 */
+	private long hash;
+
+	/**
+	 * @invar | grid != null
+	 * @representationObject
+	 */
+	private BlockGrid grid;
+
+	/**
+	 * null when a change happened since it was last built.
+	 *
+	 * @representationObject
+	 */
+	private BlockState[] snapshot;
+
+	/**
+	 * @pre | blocks != null
+	 * @pre | bottomRight != null
+	 * @pre | java.util.Arrays.stream(blocks).allMatch(b -> b != null)
+	 * @post | getLiveCount() == blocks.length
+	 */
+	BlockStore(BlockState[] blocks, Point bottomRight) {
+		this(bottomRight, blocks.length);
+		for (int slot = 0; slot < blocks.length; ++slot) {
+			pack(slot, blocks[slot]);
+		}
+		liveCount = blocks.length;
+		buildGrid();
+	}
+
+	/**
+	 * A store with the blocks given by their columns, as described at getType, getLeft, ..., getLives, none of
+	 * which is materialized yet. The store takes ownership of the arrays.
+	 *
+	 * @pre | bottomRight != null
+	 * @pre | type.length == left.length && type.length == top.length && type.length == right.length
+	 * @pre | type.length == bottom.length && type.length == lives.length
+	 * @pre | java.util.stream.IntStream.range(0, type.length).allMatch(i -> NORMAL <= type[i] && type[i] <= POWERUP)
+	 * @pre | java.util.stream.IntStream.range(0, type.length).allMatch(i -> (type[i] == STURDY) == (lives[i] > 0))
+	 * @post | getLiveCount() == type.length
+	 */
+	BlockStore(Point bottomRight, byte[] type, int[] left, int[] top, int[] right, int[] bottom, byte[] lives) {
+		this.bottomRight = bottomRight;
+		this.type = type;
+		this.left = left;
+		this.top = top;
+		this.right = right;
+		this.bottom = bottom;
+		this.lives = lives;
+		this.slots = new BlockState[type.length];
+		this.liveCount = type.length;
+		for (int slot = 0; slot < type.length; ++slot) {
+			hash += key(slot);
+		}
+		buildGrid();
+	}
+
+	private BlockStore(Point bottomRight, int slotCount) {
+		this.bottomRight = bottomRight;
+		this.type = new byte[slotCount];
+		this.left = new int[slotCount];
+		this.top = new int[slotCount];
+		this.right = new int[slotCount];
+		this.bottom = new int[slotCount];
+		this.lives = new byte[slotCount];
+		this.slots = new BlockState[slotCount];
+	}
+
+	private BlockStore(BlockStore source) {
+		this.bottomRight = source.bottomRight;
+		this.type = source.type;
+		this.left = source.left;
+		this.top = source.top;
+		this.right = source.right;
+		this.bottom = source.bottom;
+		this.lives = source.lives;
+		this.slots = source.slots;
+		this.shared = true;
+		this.slotsShared = true;
+		this.liveCount = source.liveCount;
+		this.version = source.version;
+		this.hash = source.hash;
+		this.grid = source.grid.fork();
+		this.snapshot = source.snapshot;
+	}
+
+	/**
+	 * A store with the same blocks as this one, that shares them with this store until either store changes.
+	 *
+	 * @mutates | this
+	 * @post | result.getLiveCount() == getLiveCount()
+	 * @post | result.getVersion() == getVersion()
+	 */
+	BlockStore fork() {
+		shared = true;
+		slotsShared = true;
+		return new BlockStore(this);
+	}
+
+	private void unshare() {
+		if (shared) {
+			type = type.clone();
+			left = left.clone();
+			top = top.clone();
+			right = right.clone();
+			bottom = bottom.clone();
+			lives = lives.clone();
+			shared = false;
+		}
+		unshareSlots();
+	}
+
+	private void unshareSlots() {
+		if (slotsShared) {
+			slots = slots.clone();
+			slotsShared = false;
+		}
+	}
+
+	/**
+	 * The type code of a block: NORMAL, STURDY, REPLICATOR, POWERUP for blocks of exactly these classes
+	 * (sturdy ones with at most Byte.MAX_VALUE lives), OTHER for any other block.
+	 *
+	 * @pre | block != null
+	 */
+	static byte typeOf(BlockState block) {
+		Class<?> type = block.getClass();
+		if (type == NormalBlockState.class) {
+			return NORMAL;
+		} else if (type == SturdyBlockState.class) {
+			int lives = ((SturdyBlockState) block).getLivesLeft();
+			return 0 < lives && lives <= Byte.MAX_VALUE ? STURDY : OTHER;
+		} else if (type == ReplicatorBlockState.class) {
+			return REPLICATOR;
+		} else if (type == PowerupBallBlockState.class) {
+			return POWERUP;
+		}
+		return OTHER;
+	}
+
+	private void pack(int slot, BlockState block) {
+		Rect location = block.getLocation();
+		type[slot] = typeOf(block);
+		left[slot] = location.getTopLeft().getX();
+		top[slot] = location.getTopLeft().getY();
+		right[slot] = location.getBottomRight().getX();
+		bottom[slot] = location.getBottomRight().getY();
+		lives[slot] = (byte) (type[slot] == STURDY ? ((SturdyBlockState) block).getLivesLeft() : 0);
+		slots[slot] = block;
+		hash += key(slot);
+	}
+
+	private long key(int slot) {
+		switch (type[slot]) {
+		case NORMAL: return StateHash.block(NormalBlockState.class, left[slot], top[slot], right[slot], bottom[slot], 0);
+		case STURDY: return StateHash.block(SturdyBlockState.class, left[slot], top[slot], right[slot], bottom[slot], lives[slot]);
+		case REPLICATOR: return StateHash.block(ReplicatorBlockState.class, left[slot], top[slot], right[slot], bottom[slot], 0);
+		case POWERUP: return StateHash.block(PowerupBallBlockState.class, left[slot], top[slot], right[slot], bottom[slot], 0);
+		default: return StateHash.block(slots[slot]);
+		}
+	}
+
+	private BlockState materialize(int slot) {
+		Rect location = new Rect(new Point(left[slot], top[slot]), new Point(right[slot], bottom[slot]));
+		switch (type[slot]) {
+		case NORMAL: return new NormalBlockState(location);
+		case STURDY: return new SturdyBlockState(location, lives[slot]);
+		case REPLICATOR: return new ReplicatorBlockState(location);
+		case POWERUP: return new PowerupBallBlockState(location);
+		default: throw new AssertionError("slot " + slot + " has no packed block");
+		}
+	}
+
+	private void buildGrid() {
+		grid = new BlockGrid(bottomRight, Constants.BLOCK_WIDTH, Constants.BLOCK_HEIGHT);
+		for (int slot = 0; slot < type.length; ++slot) {
+			if (type[slot] != NONE) {
+				grid.insert(slot, left[slot], top[slot], right[slot], bottom[slot]);
+			}
+		}
+	}
+
+	/**
+	 * The number of live (non-destroyed) blocks.
+	 */
+	int getLiveCount() {
+		return liveCount;
+	}
+
+	/**
+	 * A number that changes whenever a block is replaced or destroyed, so that views can tell whether the blocks
+	 * they show are still up to date.
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	/**
+	 * A hash of the live blocks (their type, location and lives), maintained in O(1) per change.
+	 * Equal sets of blocks have equal hashes.
+	 */
+	long getHash() {
+		return hash;
+	}
+
+	/**
+	 * The number of slots, tombstones included.
+	 */
+	int getSlotCount() {
+		return type.length;
+	}
+
+	/**
+	 * Whether the given slot holds a block, without materializing it.
+	 *
+	 * @pre | 0 <= slot && slot < getSlotCount()
+	 * @post | result == (get(slot) != null)
+	 */
+	boolean isLive(int slot) {
+		return type[slot] != NONE;
+	}
+
+	/**
+	 * The type code of the block in the given slot (see typeOf), or NONE if the slot is a tombstone.
+	 */
+	byte getType(int slot) {
+		return type[slot];
+	}
+
+	/**
+	 * The corners of the block in a live slot: get(slot).getLocation() without materializing it.
+	 *
+	 * @pre | isLive(slot)
+	 */
+	int getLeft(int slot) {
+		return left[slot];
+	}
+
+	int getTop(int slot) {
+		return top[slot];
+	}
+
+	int getRight(int slot) {
+		return right[slot];
+	}
+
+	int getBottom(int slot) {
+		return bottom[slot];
+	}
+
+	/**
+	 * The lives left of the block in a live slot if it is STURDY, 0 otherwise.
+	 */
+	int getLives(int slot) {
+		return lives[slot];
+	}
+
+	/**
+	 * Whether the block in a live slot overlaps the box [left, right] x [top, bottom] (bounds included).
+	 * Boxes that do not overlap a block cannot collide with it.
+	 *
+	 * @pre | isLive(slot)
+	 */
+	boolean overlaps(int slot, int left, int top, int right, int bottom) {
+		return this.left[slot] <= right && left <= this.right[slot] && this.top[slot] <= bottom && top <= this.bottom[slot];
+	}
+
+	/**
+	 * Returns the block in the given slot, or null if the slot is a tombstone.
+	 * The block is materialized from the columns on the first call, later calls return the same object.
+	 *
+	 * @pre | 0 <= slot && slot < getSlotCount()
+	 */
+	BlockState get(int slot) {
+		BlockState res = slots[slot];
+		if (res == null && type[slot] != NONE) {
+			res = materialize(slot);
+			unshareSlots();
+			slots[slot] = res;
+		}
+		return res;
+	}
+
+	/**
+	 * Collect the live slots whose block may overlap circle c, see getCandidate.
+	 *
+	 * @pre | c != null
+	 */
+	int query(Circle c) {
+		return grid.query(c);
+	}
+
+	/**
+	 * Collect the live slots whose block may overlap the box [left, right] x [top, bottom], see getCandidate.
+	 */
+	int query(int left, int top, int right, int bottom) {
+		return grid.query(left, top, right, bottom);
+	}
+
+	/**
+	 * The k-th slot found by the last query, in increasing slot order.
+	 */
+	int getCandidate(int k) {
+		return grid.getCandidate(k);
+	}
+
+	/**
+	 * Replace the block in a live slot by a block with the same location.
+	 *
+	 * @pre | get(slot) != null
+	 * @pre | block != null
+	 * @pre | block.getLocation().equals(get(slot).getLocation())
+	 * @mutates | this
+	 */
+	void replace(int slot, BlockState block) {
+		if (slots[slot] != block) {
+			unshare();
+			hash -= key(slot);
+			pack(slot, block);
+			snapshot = null;
+			version++;
+		}
+	}
+
+	/**
+	 * Destroy the block in a live slot.
+	 * This may compact the slots, which renumbers them (the order of the blocks is preserved).
+	 *
+	 * @pre | get(slot) != null
+	 * @mutates | this
+	 * @post | getLiveCount() == old(getLiveCount()) - 1
+	 */
+	void remove(int slot) {
+		grid.remove(slot, left[slot], top[slot], right[slot], bottom[slot]);
+		unshare();
+		hash -= key(slot);
+		type[slot] = NONE;
+		slots[slot] = null;
+		liveCount--;
+		snapshot = null;
+		version++;
+		int tombstones = type.length - liveCount;
+		if (tombstones >= MIN_TOMBSTONES_BEFORE_COMPACTION && tombstones > liveCount) {
+			compact();
+		}
+	}
+
+	// moves the live slots to the front, materialized or not, and trims the columns.
+	private void compact() {
+		int j = 0;
+		for (int slot = 0; slot < type.length; ++slot) {
+			if (type[slot] != NONE) {
+				type[j] = type[slot];
+				left[j] = left[slot];
+				top[j] = top[slot];
+				right[j] = right[slot];
+				bottom[j] = bottom[slot];
+				lives[j] = lives[slot];
+				slots[j] = slots[slot];
+				j++;
+			}
+		}
+		type = Arrays.copyOf(type, j);
+		left = Arrays.copyOf(left, j);
+		top = Arrays.copyOf(top, j);
+		right = Arrays.copyOf(right, j);
+		bottom = Arrays.copyOf(bottom, j);
+		lives = Arrays.copyOf(lives, j);
+		slots = Arrays.copyOf(slots, j);
+		buildGrid();
+	}
+
+	/**
+	 * Returns the live blocks in slot order, materializing them.
+	 * The result is shared: callers must not modify it.
+	 *
+	 * @post | result != null
+	 * @post | result.length == getLiveCount()
+	 */
+	BlockState[] snapshot() {
+		if (snapshot == null) {
+			BlockState[] res = new BlockState[liveCount];
+			int j = 0;
+			for (int slot = 0; slot < type.length; ++slot) {
+				if (type[slot] != NONE) {
+					res[j++] = get(slot);
+				}
+			}
+			snapshot = res;
+		}
+		return snapshot;
+	}
+
+}
@@ -1,5 +1,6 @@
 package breakout;
 
+import java.awt.Component;
 import java.awt.EventQueue;
 import javax.swing.JFrame;
 
@@ -10,17 +11,40 @@ public class BreakoutApplication {
 	}
 
 	
+	/**
+	 * Run with -Dbreakout.render=active to draw through a page-flipping BufferStrategy (ActiveGameView)
+	 * instead of Swing's repaint cycle, and with -Dbreakout.stats=true to print tick and frame times on exit.
+	 */
 	public static void main(String[] args) {
 		BreakoutState state = GameMap.createStateFromDescription(Constants.initMap4);
+		boolean active = "active".equals(System.getProperty("breakout.render"));
+		boolean stats = Boolean.getBoolean("breakout.stats");
 		EventQueue.invokeLater(() -> {
-			GameView mazeView = new GameView(state);
+			Component mazeView;
+			if (active) {
+				ActiveGameView view = new ActiveGameView(state);
+				if (stats) { printStatsOnExit(view.getTickStats(), view.getFrameStats()); }
+				mazeView = view;
+			} else {
+				GameView view = new GameView(state);
+				if (stats) { printStatsOnExit(view.getTickStats(), view.getPaintStats()); }
+				mazeView = view;
+			}
 			JFrame frame = new JFrame("Breakout");
 			frame.getContentPane().add(mazeView);
 			frame.pack();
 			frame.setLocationRelativeTo(null);
 			frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 			frame.setVisible(true);
+			mazeView.requestFocus();
 		});
 	}
 
+	private static void printStatsOnExit(CadenceStats ticks, CadenceStats frames) {
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			System.out.println("ticks:  " + ticks);
+			System.out.println("frames: " + frames);
+		}));
+	}
+
 }
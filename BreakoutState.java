@@ -1,8 +1,10 @@
 package breakout;
 
-import java.util.ArrayList;
+import java.awt.Color;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.stream.IntStream;
 
 import breakout.radioactivity.Alpha;
 import breakout.radioactivity.Ball;
@@ -28,27 +30,145 @@ import breakout.utils.Vector;
  */
 public class BreakoutState {
 
+	/**
+	 * Receives the blocks of a BreakoutState, see forEachBlock.
+	 */
+	@FunctionalInterface
+	public interface BlockVisitor {
+		void visitBlock(int left, int top, int right, int bottom, Color color);
+	}
+
+	/**
+	 * Receives the balls of a BreakoutState, see forEachBall.
+	 */
+	@FunctionalInterface
+	public interface BallVisitor {
+		void visitBall(int centerX, int centerY, int diameter, Color color);
+	}
+
+	/**
+	 * Receives the alphas of a BreakoutState, see forEachAlpha.
+	 */
+	@FunctionalInterface
+	public interface AlphaVisitor {
+		void visitAlpha(int centerX, int centerY, int diameter, Color color);
+	}
+
+	/**
+	 * Receives the ball-alpha links of a BreakoutState, see forEachLink.
+	 */
+	@FunctionalInterface
+	public interface LinkVisitor {
+		void visitLink(int ballX, int ballY, int alphaX, int alphaY);
+	}
+
+	/**
+	 * Receives the paddle of a BreakoutState, see visitPaddle.
+	 */
+	@FunctionalInterface
+	public interface PaddleVisitor {
+		/**
+		 * @param colors the colors to paint the paddle with, see PaddleState.getActualColors()
+		 */
+		void visitPaddle(int left, int top, int right, int bottom, Color[] colors);
+	}
+
+	/**
+	 * PADDLE_VELS[paddleDir + 1] is the paddle velocity for the given paddle direction.
+	 */
+	private static final Vector[] PADDLE_VELS = {
+			Constants.PADDLE_VEL.scaled(-1), Constants.PADDLE_VEL.scaled(0), Constants.PADDLE_VEL };
+	/**
+	 * The longest distance a ball is swept over the blocks in one sub-step of sweptTick: a few cells of the block
+	 * grid (see BlockStore), so that the blocks a sweep queries stay few however long the sub-step could be.
+	 */
+	private static final int SWEEP_DISTANCE = 4 * Math.min(Constants.BLOCK_WIDTH, Constants.BLOCK_HEIGHT);
 	
 	/**
 	 * @invar | bottomRight != null
 	 * @invar | Constants.ORIGIN.isUpAndLeftFrom(bottomRight)
 	 */
 	private final Point bottomRight;
+	/**
+	 * The game field. Computed once, Rect is immutable.
+	 */
+	private final Rect field;
 
-	private Ball[] balls;
+	/**
+	 * The balls, stored as primitive arrays. Ball objects are materialized at the getBalls() boundary
+	 * and when a ball collides with something.
+	 * 
+	 * @invar | balls != null
+	 * @representationObject
+	 */
+	private BallTable balls;
 
+	/**
+	 * Only the first alphaCount elements are in use, the remaining capacity is null.
+	 * 
+	 * @invar | 0 <= alphaCount && alphaCount <= alphas.length
+	 */
 	private Alpha[] alphas;
+	private int alphaCount;
+	/**
+	 * Changes whenever compactPreBalls drops an alpha. Alphas are only ever added at the end.
+	 */
+	private int alphaLayoutVersion;
+	
+	/**
+	 * The links between balls and alphas, by index in balls and alphas.
+	 * 
+	 * @invar | links != null
+	 * @representationObject
+	 */
+	private LinkGraph links;
 	/**
 	 * @invar | blocks != null
-	 * @invar | Arrays.stream(blocks).allMatch(b -> getFieldInternal().contains(b.getLocation()))
+	 * @invar | Arrays.stream(blocks.snapshot()).allMatch(b -> getFieldInternal().contains(b.getLocation()))
 	 * @representationObject
 	 */
-	private BlockState[] blocks;
+	private BlockStore blocks;
 	/**
 	 * @invar | paddle != null
 	 * @invar | getFieldInternal().contains(paddle.getLocation())
 	 */
 	private PaddleState paddle;
+	/**
+	 * The generator for the random choices of the game: the paddle's color after a replicating paddle runs out.
+	 * Its state is forked, saved, restored and replayed with the rest of the game.
+	 * No tick draws from it yet: collideBallPaddle, which is to get the paddle's next state from
+	 * paddle.stateAfterHit(random), is still a stub.
+	 * 
+	 * @invar | random != null
+	 * @representationObject
+	 */
+	private final GameRandom random = new GameRandom(GameRandom.DEFAULT_SEED);
+	/**
+	 * Records every tick and paddle move, or null if the inputs of this game are not recorded.
+	 */
+	private InputJournal journal;
+	/**
+	 * Accumulates the TickProfile of this game, or null if it is not profiled.
+	 */
+	private TickProfiler profiler;
+	private static final TickStage[] STAGES = TickStage.values();
+	/**
+	 * When set, step runs fusedStep instead of the stage pipeline.
+	 */
+	private boolean fused;
+	/**
+	 * Scratch list of the balls fusedStep set aside, see there. Only the first deferredCount elements are in use.
+	 */
+	private int[] deferred = new int[16];
+	private int deferredCount;
+	/**
+	 * alphaSteps[i] is alphaStepVelocities[i].scaled(alphaStepTime): the displacement moveAlpha last computed for
+	 * the alpha with index i. It is reused for as long as that alpha keeps the same velocity object and the steps
+	 * keep the same length, so that a moving alpha costs no new Vector per step.
+	 */
+	private Vector[] alphaSteps = new Vector[0];
+	private Vector[] alphaStepVelocities = new Vector[0];
+	private int alphaStepTime = -1;
 
 	private final Rect topWall;
 	private final Rect rightWall;
@@ -83,16 +203,14 @@ public class BreakoutState {
 		if (! Constants.ORIGIN.isUpAndLeftFrom(bottomRight) )
 			throw new IllegalArgumentException();
 		this.bottomRight = bottomRight;
+		this.field = new Rect(Constants.ORIGIN, bottomRight);
 		if (!getFieldInternal().contains(paddle.getLocation()))
 			throw new IllegalArgumentException();
 		if (!Arrays.stream(blocks).allMatch(b -> getFieldInternal().contains(b.getLocation())))
 			throw new IllegalArgumentException();
 
-		this.balls = new Ball[balls.length];
-		for(int i = 0; i < balls.length; ++i) {
-			this.balls[i] = balls[i];
-		}
-		this.blocks = blocks.clone();
+		this.balls = new BallTable(balls);
+		this.blocks = new BlockStore(blocks, bottomRight);
 		this.paddle = paddle.reproduce();
 
 		this.topWall = new Rect(new Point(0, -1000), new Point(bottomRight.getX(), 0));
@@ -102,6 +220,7 @@ public class BreakoutState {
 		this.walls = new Rect[] { topWall, rightWall, leftWall };
 		
 		this.alphas = new Alpha[] {};
+		this.links = new LinkGraph();
 	}
 	
 	/**
@@ -119,6 +238,11 @@ public class BreakoutState {
 	 */
 	public BreakoutState(BlockState[] blocks, Point bottomRight, PaddleState paddle,
 			Ball[] balls, Alpha[] alphas) {
+		this(checkedBlockStore(blocks, bottomRight, paddle), bottomRight, paddle, balls, alphas);
+	}
+
+	// the checks of the public constructor, in its order, which must all pass before its blocks are stored.
+	private static BlockStore checkedBlockStore(BlockState[] blocks, Point bottomRight, PaddleState paddle) {
 		if (blocks == null)
 			throw new IllegalArgumentException();
 		if (bottomRight == null)
@@ -127,18 +251,46 @@ public class BreakoutState {
 			throw new IllegalArgumentException();
 		if (!Constants.ORIGIN.isUpAndLeftFrom(bottomRight))
 			throw new IllegalArgumentException();
-		this.bottomRight = bottomRight;
-		if (!getFieldInternal().contains(paddle.getLocation()))
+		Rect field = new Rect(Constants.ORIGIN, bottomRight);
+		if (!field.contains(paddle.getLocation()))
 			throw new IllegalArgumentException();
-		if (!Arrays.stream(blocks).allMatch(b -> getFieldInternal().contains(b.getLocation())))
+		if (!Arrays.stream(blocks).allMatch(b -> field.contains(b.getLocation())))
 			throw new IllegalArgumentException();
+		return new BlockStore(blocks, bottomRight);
+	}
 
-		//TODO
-		this.balls = null;
-		this.alphas = null;
+	/**
+	 * Construct a new BreakoutState with the blocks of the given store, paddle + balls/alphas.
+	 * The state takes ownership of the store, whose blocks may not have been materialized (see StateCodec).
+	 * 
+	 * @pre | blocks != null
+	 * @pre | IntStream.range(0, blocks.getSlotCount()).allMatch(slot -> !blocks.isLive(slot) ||
+	 *      |     0 <= blocks.getLeft(slot) && blocks.getRight(slot) <= bottomRight.getX() &&
+	 *      |     0 <= blocks.getTop(slot) && blocks.getBottom(slot) <= bottomRight.getY())
+	 * @throws IllegalArgumentException | bottomRight == null
+	 * @throws IllegalArgumentException | paddle == null
+	 * @throws IllegalArgumentException | !Constants.ORIGIN.isUpAndLeftFrom(bottomRight)
+	 * @throws IllegalArgumentException | !(new Rect(Constants.ORIGIN,bottomRight)).contains(paddle.getLocation())
+	 */
+	BreakoutState(BlockStore blocks, Point bottomRight, PaddleState paddle, Ball[] balls, Alpha[] alphas) {
+		if (bottomRight == null)
+			throw new IllegalArgumentException();
+		if (paddle == null)
+			throw new IllegalArgumentException();
+		if (!Constants.ORIGIN.isUpAndLeftFrom(bottomRight))
+			throw new IllegalArgumentException();
+		this.bottomRight = bottomRight;
+		this.field = new Rect(Constants.ORIGIN, bottomRight);
+		if (!getFieldInternal().contains(paddle.getLocation()))
+			throw new IllegalArgumentException();
 
+		this.balls = new BallTable(balls);
+		this.alphas = alphas.clone();
+		this.alphaCount = alphas.length;
+		this.links = new LinkGraph();
+		linkAsGiven(balls, alphas);
 		
-		this.blocks = blocks.clone();
+		this.blocks = blocks;
 		this.paddle = paddle;
 
 		this.topWall = new Rect(new Point(0, -1000), new Point(bottomRight.getX(), 0));
@@ -148,6 +300,78 @@ public class BreakoutState {
 		this.walls = new Rect[] { topWall, rightWall, leftWall };
 	}
 	
+	private BreakoutState(BreakoutState source) {
+		this.bottomRight = source.bottomRight;
+		this.field = source.field;
+		this.topWall = source.topWall;
+		this.rightWall = source.rightWall;
+		this.leftWall = source.leftWall;
+		this.walls = source.walls;
+
+		this.blocks = source.blocks.fork();
+		this.balls = source.balls.copy();
+		this.alphas = new Alpha[source.alphaCount];
+		this.alphaCount = source.alphaCount;
+		this.alphaLayoutVersion = source.alphaLayoutVersion;
+		for (int a = 0; a < alphaCount; ++a) {
+			Alpha alpha = source.alphas[a];
+			if (alpha != null) {
+				alphas[a] = new Alpha(alpha.getLocation(), alpha.getVelocity());
+			}
+		}
+		this.links = source.links.copy();
+		for (int i = 0; i < balls.size(); ++i) {
+			for (int k = 0; k < links.ballDegree(i); ++k) {
+				balls.getHandle(i).linkTo(alphas[links.ballPeer(i, k)]);
+			}
+		}
+		this.paddle = source.paddle.reproduce();
+		this.random.setState(source.random.getState());
+		this.fused = source.fused;
+	}
+
+	/**
+	 * Returns an independent copy of this game, e.g. to try out moves in a lookahead search.
+	 * The copy and this game can be ticked separately without affecting each other, and they evolve the same way
+	 * given the same inputs. The copy does not record its inputs, even if this game does.
+	 *
+	 * The blocks are shared between both until either game hits a block (copy on write), so forking costs time
+	 * in the number of balls, alphas and links, not in the number of blocks.
+	 * Like ticking, forking is not thread-safe: fork a game on the thread that owns it, then hand out the copies.
+	 *
+	 * @inspects | this
+	 * @creates | result
+	 * @post | result != null
+	 */
+	public BreakoutState fork() {
+		return new BreakoutState(this);
+	}
+
+	// record the links the given objects already have, in O(number of links).
+	private void linkAsGiven(Ball[] givenBalls, Alpha[] givenAlphas) {
+		IdentityHashMap<Alpha, Integer> alphaIndex = new IdentityHashMap<Alpha, Integer>();
+		for (int j = 0; j < givenAlphas.length; ++j) {
+			alphaIndex.put(givenAlphas[j], j);
+		}
+		for (int i = 0; i < givenBalls.length; ++i) {
+			for (Alpha alpha : givenBalls[i].getAlphas()) {
+				Integer j = alphaIndex.get(alpha);
+				if (j != null) {
+					links.link(i, j);
+				}
+			}
+		}
+	}
+	
+	// add the links of the link graph to resBalls and resAlphas, linear in the number of links.
+	private void relink(Ball[] resBalls, Alpha[] resAlphas) {
+		for (int i = 0; i < resBalls.length; ++i) {
+			for (int k = 0; k < links.ballDegree(i); ++k) {
+				resBalls[i].linkTo(resAlphas[links.ballPeer(i, k)]);
+			}
+		}
+	}
+	
 	/**
 	 * Returns a fresh ball, with fresh peers (alphas, other balls).
 	 * In other words getBalls gives a deepcopy.
@@ -156,24 +380,8 @@ public class BreakoutState {
      * @creates ...result
 	 */
 	public Ball[] getBalls() {
-		Ball[] resBalls = new Ball[balls.length];
-		Alpha[] resAlphas = new Alpha[alphas.length];
-		for(int i = 0; i < balls.length; ++i) {
-			resBalls[i] = balls[i];
-		}
-		for(int j = 0; j < alphas.length; ++j) {
-			resAlphas[j] = alphas[j];
-		}
-		//we add links where relevant.
-		for (int i = 0; i < balls.length; ++i) {
-			for (int j = 0; j < alphas.length; ++j) {
-				//checking the symmetric statement would work
-				//thanks to bidir invar.
-				if (alphas[j].getBalls().contains(balls[i])) {
-					resBalls[i].linkTo(resAlphas[j]);
-				}
-			}
-		}
+		Ball[] resBalls = balls.copyAll();
+		relink(resBalls, copyAlphas());
 		return resBalls;
 	}
 	
@@ -186,25 +394,257 @@ public class BreakoutState {
      * @creates ...result
 	 */
 	public Alpha[] getAlphas() {
-		Ball[] resBalls = new Ball[balls.length];
-		Alpha[] resAlphas = new Alpha[alphas.length];
-		for(int i = 0; i < balls.length; ++i) {
-			resBalls[i] = balls[i];
-		}
-		for(int j = 0; j < alphas.length; ++j) {
-			resAlphas[j] = alphas[j];
-		}
-		//we add links where relevant.
-		for (int i = 0; i < balls.length; ++i) {
-			for (int j = 0; j < alphas.length; ++j) {
-				//checking the symmetric statement would work
-				//thanks to bidir invar.
-				if (alphas[j].getBalls().contains(balls[i])) {
-					resBalls[i].linkTo(resAlphas[j]);
-				}
+		Alpha[] resAlphas = copyAlphas();
+		relink(balls.copyAll(), resAlphas);
+		return resAlphas;
+	}
+
+	// fresh copies of the alphas, without links.
+	private Alpha[] copyAlphas() {
+		Alpha[] res = new Alpha[alphaCount];
+		for (int a = 0; a < alphaCount; ++a) {
+			res[a] = new Alpha(alphas[a].getLocation(), alphas[a].getVelocity());
+		}
+		return res;
+	}
+
+	/**
+	 * A 64-bit hash of this game: of its blocks (type, location and lives), its balls (center, velocity, diameter, kind
+	 * and lifetime), the links between balls and alphas, and its paddle (type, center, color and count).
+	 * Equal games have equal hashes, so search code can use it to find transpositions and replays or parallel runs
+	 * can compare it after each tick to detect divergence. Games with equal hashes are very likely, but not certainly, equal.
+	 *
+	 * The hashes of the blocks and links are maintained incrementally, in O(1) per change. So is the hash of the
+	 * balls, except that a step of the stage pipeline moves all balls in bulk without updating it: the first call
+	 * after such a step recomputes it, in O(number of balls). The hash is only meaningful between ticks.
+	 */
+	public long getHash() {
+		return blocks.getHash() + balls.getHash() + links.getHash() + StateHash.paddle(paddle);
+	}
+
+	/**
+	 * The hash of this game, computed from scratch. Equals getHash() unless the incremental hash has gone astray.
+	 *
+	 * @post | result == getHash()
+	 */
+	long recomputeHash() {
+		long res = StateHash.paddle(paddle);
+		for (BlockState block : blocks.snapshot()) {
+			res += StateHash.block(block);
+		}
+		for (int i = 0; i < balls.size(); ++i) {
+			if (balls.isLive(i)) {
+				res += StateHash.ball(balls.getX(i), balls.getY(i), balls.getVelocityX(i), balls.getVelocityY(i),
+						balls.getDiameter(i), balls.getKind(i), balls.getLifetime(i));
+			}
+			for (int k = 0; k < links.ballDegree(i); ++k) {
+				res += StateHash.link(i, links.ballPeer(i, k));
 			}
 		}
-		return resAlphas;
+		return res;
+	}
+
+	/**
+	 * A number that changes whenever a ball is added, a ball or an alpha is removed, or a link is made or broken.
+	 * As long as it and the number of alphas stay the same, an index in forEachBall, forEachAlpha or forEachLink
+	 * designates the same ball, alpha or link: renderers only interpolate between such frames.
+	 */
+	int getLayoutVersion() {
+		return balls.getLayoutVersion() + alphaLayoutVersion + links.getVersion();
+	}
+
+	/**
+	 * A number that changes whenever a block of this state is hit, see BlockStore.getVersion().
+	 */
+	int getBlockVersion() {
+		return blocks.getVersion();
+	}
+
+	/**
+	 * Restart the generator for the random choices of this game (see PaddleState.stateAfterHit) from the given seed.
+	 * New states start from GameRandom.DEFAULT_SEED.
+	 * 
+	 * @mutates | this
+	 */
+	public void setSeed(long seed) {
+		random.setState(seed);
+	}
+
+	/**
+	 * Record the inputs of this game in `journal` from now on, or stop recording if it is null.
+	 * 
+	 * @mutates | this
+	 */
+	void setJournal(InputJournal journal) {
+		this.journal = journal;
+	}
+
+	/**
+	 * Start a new profiling session, or stop profiling. Forks of this state are not profiled.
+	 * 
+	 * @mutates | this
+	 * @post | isProfiling() == enabled
+	 */
+	public void setProfiling(boolean enabled) {
+		profiler = enabled ? new TickProfiler() : null;
+	}
+
+	/**
+	 * Whether the steps of this game are profiled, see getTickProfile.
+	 */
+	public boolean isProfiling() {
+		return profiler != null;
+	}
+
+	/**
+	 * The time spent and the events counted in each stage of the steps since profiling was last enabled.
+	 * 
+	 * @throws IllegalStateException | !isProfiling()
+	 * @creates | result
+	 */
+	public TickProfile getTickProfile() {
+		if (profiler == null)
+			throw new IllegalStateException("profiling is disabled");
+		return profiler.snapshot();
+	}
+
+	/**
+	 * The block storage, for StateCodec. Callers must not modify it.
+	 */
+	BlockStore getBlockStore() {
+		return blocks;
+	}
+
+	/**
+	 * The ball storage, for StateCodec. Between ticks, all its entries are live.
+	 * Callers must not modify it.
+	 */
+	BallTable getBallTable() {
+		return balls;
+	}
+
+	int getAlphaCount() {
+		return alphaCount;
+	}
+
+	/**
+	 * The alpha with index a, as used by getLinkGraph(). Callers must not modify it.
+	 * 
+	 * @pre | 0 <= a && a < getAlphaCount()
+	 */
+	Alpha getAlpha(int a) {
+		return alphas[a];
+	}
+
+	/**
+	 * The links between the balls of getBallTable() and the alphas of getAlpha(), by index.
+	 * Callers must not modify it.
+	 */
+	LinkGraph getLinkGraph() {
+		return links;
+	}
+
+	/**
+	 * The generator for this game's random choices. Saving and restoring its state saves and restores them.
+	 */
+	GameRandom getRandom() {
+		return random;
+	}
+
+	/**
+	 * Pass every block to the visitor, in the order of getBlocks(), without copying the block array.
+	 * 
+	 * @pre | visitor != null
+	 * @inspects | this
+	 */
+	public void forEachBlock(BlockVisitor visitor) {
+		for (int slot = 0; slot < blocks.getSlotCount(); ++slot) {
+			BlockState block = blocks.get(slot);
+			if (block != null) {
+				Rect loc = block.getLocation();
+				visitor.visitBlock(loc.getTopLeft().getX(), loc.getTopLeft().getY(),
+						loc.getBottomRight().getX(), loc.getBottomRight().getY(), block.getColor());
+			}
+		}
+	}
+
+	/**
+	 * Pass every ball to the visitor, in the order of getBalls(), straight from the primitive ball storage.
+	 * 
+	 * @pre | visitor != null
+	 * @inspects | this
+	 */
+	public void forEachBall(BallVisitor visitor) {
+		for (int i = 0; i < balls.size(); ++i) {
+			//the color only depends on the velocity, which the handle always has up to date.
+			visitor.visitBall(balls.getX(i), balls.getY(i), balls.getDiameter(i), balls.getHandle(i).getColor());
+		}
+	}
+
+	/**
+	 * Pass every alpha to the visitor, in the order of getAlphas().
+	 * 
+	 * @pre | visitor != null
+	 * @inspects | this
+	 */
+	public void forEachAlpha(AlphaVisitor visitor) {
+		for (int j = 0; j < alphaCount; ++j) {
+			Alpha alpha = alphas[j];
+			visitor.visitAlpha(alpha.getCenter().getX(), alpha.getCenter().getY(),
+					alpha.getLocation().getDiameter(), alpha.getColor());
+		}
+	}
+
+	/**
+	 * Pass the centers of the two ends of every ball-alpha link to the visitor.
+	 * 
+	 * @pre | visitor != null
+	 * @inspects | this
+	 */
+	public void forEachLink(LinkVisitor visitor) {
+		for (int i = 0; i < balls.size(); ++i) {
+			for (int k = 0; k < links.ballDegree(i); ++k) {
+				Alpha alpha = alphas[links.ballPeer(i, k)];
+				visitor.visitLink(balls.getX(i), balls.getY(i), alpha.getCenter().getX(), alpha.getCenter().getY());
+			}
+		}
+	}
+
+	/**
+	 * Pass the location and colors of the paddle to the visitor, without reproducing the paddle.
+	 * 
+	 * @pre | visitor != null
+	 * @inspects | this
+	 */
+	public void visitPaddle(PaddleVisitor visitor) {
+		Point center = paddle.getCenter();
+		visitor.visitPaddle(center.getX() - Constants.PADDLE_WIDTH / 2, center.getY() - Constants.PADDLE_HEIGHT / 2,
+				center.getX() + Constants.PADDLE_WIDTH / 2, center.getY() + Constants.PADDLE_HEIGHT / 2,
+				paddle.getActualColors());
+	}
+
+	/**
+	 * Make the balls go through their objects on every step instead of through the primitive arrays.
+	 * The resulting game is the same; this exists to benchmark and test both paths.
+	 * 
+	 * @mutates | this
+	 */
+	void setObjectBallPath(boolean objectPath) {
+		balls.setObjectPath(objectPath);
+	}
+
+	/**
+	 * Run each step as a single pass over the balls (see fusedStep) instead of one pass per stage.
+	 * The resulting game is the same. Profiling (see setProfiling) always runs the stages one by one.
+	 * 
+	 * @mutates | this
+	 */
+	void setFusedStep(boolean fused) {
+		this.fused = fused;
+	}
+
+	boolean isFusedStep() {
+		return fused;
 	}
 
 	/**
@@ -213,7 +653,7 @@ public class BreakoutState {
 	 * @creates | result
 	 */
 	public BlockState[] getBlocks() {
-		return blocks.clone();
+		return blocks.snapshot().clone();
 	}
 
 	/**
@@ -233,7 +673,7 @@ public class BreakoutState {
 
 	// internal version of getField which can be invoked in partially inconsistent states
 	private Rect getFieldInternal() {
-		return new Rect(Constants.ORIGIN, bottomRight);
+		return field;
 	}
 	
 	/**
@@ -275,20 +715,45 @@ public class BreakoutState {
 
 
 	private void clampPreBall(PreBall b) {
-		Circle loc = getFieldInternal().constrain(b.getLocation());
-		b.setLocation(loc);
+		Circle loc = b.getLocation();
+		if (!insideField(loc)) {
+			b.setLocation(getFieldInternal().constrain(loc));
+		}
+	}
+	
+	// allocation-free check that constrain would leave loc unchanged.
+	private boolean insideField(Circle loc) {
+		int radius = (loc.getDiameter() + 1) / 2;
+		int x = loc.getCenter().getX();
+		int y = loc.getCenter().getY();
+		return x - radius >= 0 && y - radius >= 0
+				&& x + radius <= bottomRight.getX() && y + radius <= bottomRight.getY();
 	}
 
 	/**
+	 * Only the blocks registered in the grid cells overlapped by the ball are tested,
+	 * in the order of getBlocks().
+	 * 
 	 * @mutates | ball
 	 * @mutates_properties | getPaddle()
 	 * @post | result.getCenter() .equals( ball.getCenter() )
 	 */
 	private Ball collideBallBlocks(Ball ball) {
-		for (BlockState block : blocks) {
+		Circle location = ball.getLocation();
+		int radius = (location.getDiameter() + 1) / 2;
+		int x = location.getCenter().getX();
+		int y = location.getCenter().getY();
+		int candidates = blocks.query(x - radius, y - radius, x + radius, y + radius);
+		for (int k = 0; k < candidates; ++k) {
+			int slot = blocks.getCandidate(k);
+			//blocks apart from the ball's bounding box cannot collide with it: skip them without materializing them.
+			if (!blocks.overlaps(slot, x - radius, y - radius, x + radius, y + radius)) {
+				continue;
+			}
+			BlockState block = blocks.get(slot);
 			if (ball.collidesWith(block.getLocation())) {
 				//does not affect the balls
-				boolean destroyed = hitBlock(block, ball.getVelocity().getSquareLength());
+				boolean destroyed = hitBlock(slot, ball.getVelocity().getSquareLength());
 				//may affect ball diam/velocity
 				ball.hitBlock(block.getLocation(), destroyed);
 				paddle = block.paddleStateAfterHit(paddle);
@@ -300,33 +765,27 @@ public class BreakoutState {
 
 	
 	/**
-	 * "Hits" the block argument once with a ball having speed sqrt(squaredSpeed).
+	 * "Hits" the block in the given slot once with a ball having speed sqrt(squaredSpeed).
 	 * This can result in the block being destructed, i.e. not tracked in getBlocks() (returns ture in that case).
 	 * Or no destruction occurs; in this case the block is updated instead of being removed. (returns false in that case).
+	 * Either way only that slot of the block store is touched.
 	 * 
 	 * Does not affect the balls.
 	 * 
+	 * @pre | blocks.get(slot) != null
 	 * @pre | squaredSpeed >= 0
 	 * // @post | sameBallArray( old( balls ), balls )
 	 * // @post | false
 	 * @mutates | this
 	 */
-	private boolean hitBlock(BlockState block, int squaredSpeed) {
-		boolean destroyed = true;
-		ArrayList<BlockState> nblocks = new ArrayList<BlockState>();
-		for (BlockState b : blocks) {
-			if (b != block) {
-				nblocks.add(b);
-			} else {
-				BlockState nb = block.blockStateAfterHit(squaredSpeed);
-				if (nb != null) {
-					nblocks.add(nb);
-					destroyed = false;
-				}
-			}
+	private boolean hitBlock(int slot, int squaredSpeed) {
+		BlockState nb = blocks.get(slot).blockStateAfterHit(squaredSpeed);
+		if (nb == null) {
+			blocks.remove(slot);
+			return true;
 		}
-		blocks = nblocks.toArray(new BlockState[] {});
-		return destroyed;
+		blocks.replace(slot, nb);
+		return false;
 	}
 
 	/**
@@ -338,6 +797,8 @@ public class BreakoutState {
 	 *  - if the paddle is a replicator paddle new balls (with no peers) get emitted (-> this.balls grows)
 	 *  - a new alpha linked with ball is anyway created (-> this.alphas grows)
 	 * 
+	 * The paddle's next state is to be paddle.stateAfterHit(random), so that the game stays reproducible.
+	 * 
 	 * @mutates | ball
 	 * @mutates | this
 	 * @post | ball.getCenter().equals(old( ball.getCenter() ))
@@ -358,6 +819,9 @@ public class BreakoutState {
 	 * 
 	 * Move all moving objects one step forward. please prefer tickDuring.
 	 * 
+	 * Apart from collisions (new velocities, balls and blocks) and the balls that take the object path (see
+	 * setObjectBallPath), a step allocates only the new (immutable) location of each alpha, which Alpha.move creates.
+	 * 
 	 * @pre | paddleDir == -1 || paddleDir == 0 || paddleDir == 1
 	 * 
 	 * @pre | elapsedTime >= 0
@@ -367,17 +831,281 @@ public class BreakoutState {
 	 * @mutates | ...getBalls()
 	 */
 	void tick(int paddleDir, int elapsedTime) {
-		//the comments indicate some events that may occur in each call.
-		stepPreBalls(elapsedTime); //move balls/alphas a bit
-		bouncePreBallsOnWalls(); //preball velocities may change. Magnetism may occur.
-		removeDeadPreBalls(); //remove preballs out of field. must unlink.
-		bounceBallsOnBlocks(); //blocks may be affected and ball may be affected/replaced (but not their center). 
-		bounceBallsOnPaddle(paddleDir); //balls velocities may change, and new balls may be created. radioactivity may occur.
-		bounceAlphasOnPaddle(paddleDir); //anti-radioactivity may occur
-		clampPreBalls(); //for balls to remain within field.
-		balls = Arrays.stream(balls).filter(x -> x != null).toArray(Ball[]::new);
-		alphas = Arrays.stream(alphas).filter(x -> x != null).toArray(Alpha[]::new);
-		noLongerSuperCharged(); //useless supercharged instances replaced with normal balls. remember to unlink.
+		step(paddleDir, elapsedTime);
+		if (journal != null) {
+			journal.recordTick(paddleDir, elapsedTime, this);
+		}
+	}
+	
+	/**
+	 * Like tick, but without an upper bound on elapsedTime: the step is cut at the next event, i.e.
+	 *  - the time of impact of a ball or alpha with a wall, the paddle or a block (see SweptCollision),
+	 *    so that fast balls bounce instead of tunneling through thin blocks or the paddle,
+	 *  - the time a pre-ball crosses the bottom of the field,
+	 *  - the time a supercharged ball runs out of lifetime,
+	 *  - the time a ball needs to travel SWEEP_DISTANCE, which bounds the blocks each sub-step checks.
+	 * Stretches during which nothing happens are crossed in a few long steps.
+	 * 
+	 * While some pre-ball is in contact with something, the sub-steps fall back to Constants.BALL_DELAYMS.
+	 * 
+	 * @pre | paddleDir == -1 || paddleDir == 0 || paddleDir == 1
+	 * @pre | elapsedTime >= 0
+	 * 
+	 * @mutates | this
+	 * @mutates | ...getBalls()
+	 */
+	void sweptTick(int paddleDir, int elapsedTime) {
+		int remaining = elapsedTime;
+		while (remaining > 0) {
+			int dt = Math.min(remaining, timeToNextEvent(remaining));
+			step(paddleDir, dt);
+			remaining -= dt;
+		}
+	}
+	
+	/**
+	 * Event-driven alternative to tickDuring: jumps from one event to the next (see sweptTick)
+	 * instead of looping in 20ms increments, which makes idle stretches essentially free.
+	 * 
+	 * Tolerance with respect to tickDuring(elapsedTime): when no event occurs, both end in exactly the same state.
+	 * Otherwise tickDuring only notices a contact at the end of the 20ms step in which it starts, while this method
+	 * notices it in the first ms. So a single bounce may leave a pre-ball's center up to
+	 * 2 * Constants.MAX_BALL_SPEED * Constants.BALL_DELAYMS apart from tickDuring's along the reflected axis.
+	 * These offsets add up over successive bounces, so after several bounces the two may hit other blocks, in
+	 * another order, and keep other balls: this method plays a game like tickDuring's, not the same game.
+	 * 
+	 * The sub-steps cannot be expressed as ticks, so games whose inputs are recorded in an InputJournal refuse this.
+	 * 
+	 * @pre | elapsedTime >= 0
+	 * @throws IllegalStateException if the inputs of this game are recorded
+	 * @mutates | this
+	 */
+	public void fastForward(int elapsedTime) {
+		if (journal != null)
+			throw new IllegalStateException();
+		sweptTick(0, elapsedTime);
+	}
+	
+	/**
+	 * Returns the time (at least 1, at most maxTime) until the next event, see sweptTick.
+	 * 
+	 * @pre | maxTime > 0
+	 * @post | 1 <= result && result <= maxTime
+	 */
+	private int timeToNextEvent(int maxTime) {
+		int res = maxTime;
+		for (int i = 0; i < balls.size(); ++i) {
+			res = Math.min(res, timeToContact(balls.getX(i), balls.getY(i),
+					balls.getVelocityX(i), balls.getVelocityY(i), balls.getRadius(i), res, true));
+			if (balls.getKind(i) == BallTable.SUPERCHARGED) {
+				//backToNormal is checked at the end of each step, stop right when the lifetime runs out.
+				res = Math.min(res, Math.max(1, balls.getLifetime(i)));
+			}
+		}
+		for (int i = 0; i < alphaCount; ++i) {
+			Alpha alpha = alphas[i];
+			res = Math.min(res, timeToContact(alpha.getCenter().getX(), alpha.getCenter().getY(),
+					alpha.getVelocity().getX(), alpha.getVelocity().getY(), (alpha.getLocation().getDiameter() + 1) / 2,
+					res, false));
+		}
+		return Math.max(1, res);
+	}
+	
+	// time of impact of one pre-ball within maxTime, BALL_DELAYMS if it is already in contact, maxTime if none.
+	// crossing the bottom of the field (see belowLimit) counts as an impact.
+	private int timeToContact(int x, int y, int vx, int vy, int radius, int maxTime, boolean withBlocks) {
+		int w = bottomRight.getX();
+		int h = bottomRight.getY();
+		int res = maxTime;
+		if (vy > 0) {
+			//field bottom, see belowLimit
+			int gap = h - (y + radius);
+			res = gap <= 0 ? Math.min(res, Constants.BALL_DELAYMS) : Math.min(res, gap / vy + 1);
+		}
+		res = earliest(res, SweptCollision.timeOfImpact(x, y, vx, vy, radius, 0, -1000, w, 0, res)); //top wall
+		res = earliest(res, SweptCollision.timeOfImpact(x, y, vx, vy, radius, w, 0, w + 1000, h, res)); //right wall
+		res = earliest(res, SweptCollision.timeOfImpact(x, y, vx, vy, radius, -1000, 0, 0, h, res)); //left wall
+		Point pc = paddle.getCenter();
+		res = earliest(res, SweptCollision.timeOfImpact(x, y, vx, vy, radius,
+				pc.getX() - Constants.PADDLE_WIDTH / 2, pc.getY() - Constants.PADDLE_HEIGHT / 2,
+				pc.getX() + Constants.PADDLE_WIDTH / 2, pc.getY() + Constants.PADDLE_HEIGHT / 2, res));
+		if (withBlocks) {
+			//blocks in the cells swept by the ball during res, but no further than SWEEP_DISTANCE
+			int speed = Math.max(Math.abs(vx), Math.abs(vy));
+			if (speed > 0) {
+				res = Math.min(res, Math.max(1, SWEEP_DISTANCE / speed));
+			}
+			long x1 = x + (long) vx * res;
+			long y1 = y + (long) vy * res;
+			int candidates = blocks.query(saturate(Math.min(x, x1) - radius), saturate(Math.min(y, y1) - radius),
+					saturate(Math.max(x, x1) + radius), saturate(Math.max(y, y1) + radius));
+			for (int k = 0; k < candidates; ++k) {
+				int slot = blocks.getCandidate(k);
+				res = earliest(res, SweptCollision.timeOfImpact(x, y, vx, vy, radius,
+						blocks.getLeft(slot), blocks.getTop(slot), blocks.getRight(slot), blocks.getBottom(slot), res));
+			}
+		}
+		return res;
+	}
+	
+	private static int saturate(long value) {
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, value));
+	}
+	
+	// an impact at time 0 is an ongoing contact: step like the fixed-step loop would.
+	private static int earliest(int current, int impact) {
+		if (impact == 0) {
+			return Math.min(current, Constants.BALL_DELAYMS);
+		}
+		return Math.min(current, impact);
+	}
+	
+	/**
+	 * The phases of a single step, shared by tick and sweptTick.
+	 * 
+	 * @pre | paddleDir == -1 || paddleDir == 0 || paddleDir == 1
+	 * @pre | elapsedTime >= 0
+	 * @mutates | this
+	 */
+	private void step(int paddleDir, int elapsedTime) {
+		if (profiler != null) {
+			profiledStep(paddleDir, elapsedTime);
+			return;
+		}
+		if (fused) {
+			fusedStep(paddleDir, elapsedTime);
+			return;
+		}
+		for (TickStage stage : STAGES) {
+			runStage(stage, paddleDir, elapsedTime);
+		}
+	}
+
+	/**
+	 * Like step, and accounts each stage in the profiler: its time on sampled steps, and on every step the
+	 * blocks it hit (the change in getBlockVersion()) and the balls and alphas it removed and created.
+	 */
+	private void profiledStep(int paddleDir, int elapsedTime) {
+		boolean timed = profiler.beginStep();
+		long before = timed ? System.nanoTime() : 0;
+		for (TickStage stage : STAGES) {
+			long version = blocks.getVersion();
+			int live = balls.getLiveCount();
+			int slots = balls.size();
+			int alphasBefore = alphaCount;
+			runStage(stage, paddleDir, elapsedTime);
+			long after = timed ? System.nanoTime() : 0;
+			// removed balls leave the live count at once, removed alphas leave alphaCount on compaction
+			int removed = Math.max(0, live - balls.getLiveCount()) + Math.max(0, alphasBefore - alphaCount);
+			int created = Math.max(0, balls.size() - slots) + Math.max(0, alphaCount - alphasBefore);
+			profiler.record(stage, after - before, (int) (blocks.getVersion() - version), removed, created);
+			before = after;
+		}
+	}
+
+	/**
+	 * Run one stage of a step. The comments indicate some events that may occur in each stage.
+	 */
+	private void runStage(TickStage stage, int paddleDir, int elapsedTime) {
+		switch (stage) {
+		case STEP_PRE_BALLS -> stepPreBalls(elapsedTime); //move balls/alphas a bit
+		case BOUNCE_PRE_BALLS_ON_WALLS -> bouncePreBallsOnWalls(); //preball velocities may change. Magnetism may occur.
+		case REMOVE_DEAD_PRE_BALLS -> removeDeadPreBalls(); //remove preballs out of field. must unlink.
+		case BOUNCE_BALLS_ON_BLOCKS -> bounceBallsOnBlocks(); //blocks may be affected and ball may be affected/replaced (but not their center).
+		case BOUNCE_BALLS_ON_PADDLE -> bounceBallsOnPaddle(paddleDir); //balls velocities may change, and new balls may be created. radioactivity may occur.
+		case BOUNCE_ALPHAS_ON_PADDLE -> bounceAlphasOnPaddle(paddleDir); //anti-radioactivity may occur
+		case CLAMP_PRE_BALLS -> clampPreBalls(); //for balls to remain within field.
+		case COMPACT_PRE_BALLS -> compactPreBalls(); //drop the null entries left by removeDeadPreBalls, in place.
+		case NO_LONGER_SUPER_CHARGED -> noLongerSuperCharged(); //useless supercharged instances replaced with normal balls. remember to unlink.
+		}
+	}
+
+	/**
+	 * The same step as the stage pipeline, in one pass over the balls instead of one per stage: each ball is moved,
+	 * bounced on the walls and the blocks, clamped and turned back to normal before the next ball is touched.
+	 * 
+	 * Stages that depend on more than the ball itself are applied in one batch at the end of the step, in the
+	 * order of the pipeline. Balls that left the field (which may be removed) or touch the paddle (which the
+	 * blocks hit later in the pass may still change, and which may spawn balls and alphas) are set aside after
+	 * their block bounce, and finish their step after the removal of dead balls, together with the balls spawned
+	 * by the paddle.
+	 * 
+	 * Alphas are few: they are moved and bounced on the walls before the pass, as in the pipeline. While some ball
+	 * is linked to an alpha, magnetism couples them (see bounceAlphaOnWalls), so the balls are then moved and bounced
+	 * on the walls by the pipeline's own two stages, and the pass starts at the block bounce.
+	 * 
+	 * Balls bounce on the blocks in index order, as in the pipeline, so that a block hit by two balls in one
+	 * step goes to the same ball. A ball that left the field bounces on the blocks as well: removeDeadPreBalls
+	 * leaves it in place, so the pipeline bounces it too. Should removeDeadPreBalls clear such balls, their block
+	 * bounce has to be skipped here.
+	 * 
+	 * @pre | paddleDir == -1 || paddleDir == 0 || paddleDir == 1
+	 * @pre | elapsedTime >= 0
+	 * @mutates | this
+	 */
+	private void fusedStep(int paddleDir, int elapsedTime) {
+		deferredCount = 0;
+		int count = balls.size();
+		boolean linked = links.getLinkCount() > 0;
+		if (linked) {
+			stepPreBalls(elapsedTime);
+			bouncePreBallsOnWalls();
+		} else {
+			for (int i = 0; i < alphaCount; ++i) {
+				moveAlpha(i, elapsedTime);
+				bounceAlphaOnWalls(i);
+			}
+		}
+		for (int i = 0; i < count; ++i) {
+			if (!linked) {
+				balls.integrate(i, elapsedTime);
+				bounceBallOnWalls(i);
+			}
+			boolean left = leftField(i);
+			bounceBallOnBlocks(i);
+			if (left || balls.isObjectPath() || touchesPaddle(i)) {
+				defer(i);
+				continue;
+			}
+			clampBall(i);
+			ballBackToNormal(i);
+		}
+
+		removeDeadPreBalls();
+		Vector paddleVel = PADDLE_VELS[paddleDir + 1];
+		for (int k = 0; k < deferredCount; ++k) {
+			bounceBallOnPaddle(deferred[k], paddleVel);
+		}
+		for (int i = count; i < balls.size(); ++i) { //spawned by the paddle
+			bounceBallOnPaddle(i, paddleVel);
+		}
+		bounceAlphasOnPaddle(paddleDir);
+		for (int k = 0; k < deferredCount; ++k) {
+			int i = deferred[k];
+			if (balls.isLive(i)) {
+				clampBall(i);
+				ballBackToNormal(i);
+			}
+		}
+		for (int i = count; i < balls.size(); ++i) { //spawned by the paddle
+			if (balls.isLive(i)) {
+				clampBall(i);
+				ballBackToNormal(i);
+			}
+		}
+		for (int i = 0; i < alphaCount; ++i) {
+			if (alphas[i] != null) {
+				clampPreBall(alphas[i]);
+			}
+		}
+		compactPreBalls();
+	}
+
+	private void defer(int entry) {
+		if (deferredCount == deferred.length) {
+			deferred = Arrays.copyOf(deferred, 2 * deferred.length);
+		}
+		deferred[deferredCount++] = entry;
 	}
 
 	/**
@@ -394,13 +1122,40 @@ public class BreakoutState {
 		}
 	}
 
+	private void compactPreBalls() {
+		balls.compact(links);
+		int j = 0;
+		for (int i = 0; i < alphaCount; ++i) {
+			if (alphas[i] == null) {
+				links.clearAlpha(i);
+			} else {
+				links.moveAlpha(i, j);
+				alphas[j++] = alphas[i];
+			}
+		}
+		if (j < alphaCount) {
+			alphaLayoutVersion++;
+		}
+		Arrays.fill(alphas, j, alphaCount, null);
+		alphaCount = j;
+	}
+	
+	private void clampBall(int i) {
+		if(balls.isObjectPath() || balls.touchesBorder(i, bottomRight)) {
+			clampPreBall(balls.materialize(i));
+			balls.absorb(i);
+		}
+	}
+
 	private void clampPreBalls() {
-		for(int i = 0; i < balls.length; ++i) {
-			if(balls[i] != null) {
-				clampPreBall(balls[i]);
+		int candidates = balls.queryBorder(bottomRight);
+		for(int k = 0; k < candidates; ++k) {
+			int i = balls.getCandidate(k);
+			if(balls.isLive(i)) {
+				clampBall(i);
 			}		
 		}
-		for(int i = 0; i < alphas.length; ++i) {
+		for(int i = 0; i < alphaCount; ++i) {
 			if(alphas[i] != null) {
 				clampPreBall(alphas[i]);
 			}
@@ -411,18 +1166,30 @@ public class BreakoutState {
 	 * @pre | paddleDir == -1 || paddleDir == 0 || paddleDir == 1
 	 */
 	private void bounceBallsOnPaddle(int paddleDir) {
-		Vector paddleVel = Constants.PADDLE_VEL.scaled(paddleDir);
-		for(int i = 0; i < balls.length; ++i) {
-			if(balls[i] != null) {
-				collideBallPaddle(balls[i], paddleVel);
-			}
+		Vector paddleVel = PADDLE_VELS[paddleDir + 1];
+		for(int i = 0; i < balls.size(); ++i) {
+			bounceBallOnPaddle(i, paddleVel);
+		}
+	}
+
+	private void bounceBallOnPaddle(int i, Vector paddleVel) {
+		if(balls.isLive(i) && (balls.isObjectPath() || touchesPaddle(i))) {
+			collideBallPaddle(balls.materialize(i), paddleVel);
+			balls.absorb(i);
 		}
 	}
+
+	// whether the bounding box of ball i overlaps the paddle, computed on the primitive arrays.
+	private boolean touchesPaddle(int i) {
+		Point center = paddle.getCenter();
+		return balls.overlaps(i, center.getX() - Constants.PADDLE_WIDTH / 2, center.getY() - Constants.PADDLE_HEIGHT / 2,
+				center.getX() + Constants.PADDLE_WIDTH / 2, center.getY() + Constants.PADDLE_HEIGHT / 2);
+	}
 	
 	private void bounceAlphasOnPaddle(int paddleDir) {
-		Vector paddleVel = Constants.PADDLE_VEL.scaled(paddleDir);
+		Vector paddleVel = PADDLE_VELS[paddleDir + 1];
 		//note that collideAlphaPaddle may change this.balls
-		for(int i = 0; i < alphas.length; ++i) {
+		for(int i = 0; i < alphaCount; ++i) {
 			if(alphas[i] != null) {
 				collideAlphaPaddle(alphas[i], paddleVel);
 			}
@@ -430,20 +1197,34 @@ public class BreakoutState {
 	}
 
 	private void bounceBallsOnBlocks() {
-		for(int i = 0; i < balls.length; ++i) {
-			if(balls[i] != null) {
-				balls[i] = collideBallBlocks(balls[i]);
+		for(int i = 0; i < balls.size(); ++i) {
+			if(balls.isLive(i)) {
+				bounceBallOnBlocks(i);
 			}
 		}
 	}
+
+	private void bounceBallOnBlocks(int i) {
+		if(balls.isObjectPath() || nearBlock(i)) {
+			balls.set(i, collideBallBlocks(balls.materialize(i)));
+		}
+	}
+	
+	// whether ball i shares a grid cell with a block, computed on the primitive arrays.
+	private boolean nearBlock(int i) {
+		int r = balls.getRadius(i);
+		int x = balls.getX(i);
+		int y = balls.getY(i);
+		return blocks.query(x - r, y - r, x + r, y + r) > 0;
+	}
 	
 	/**
 	 * TODO
 	 * 
-	 * @pre | Arrays.stream(balls).allMatch(bal -> bal != null)
-	 * @pre | Arrays.stream(alphas).allMatch(a -> a != null)
+	 * @pre | IntStream.range(0, balls.size()).allMatch(i -> balls.isLive(i))
+	 * @pre | Arrays.stream(alphas, 0, alphaCount).allMatch(a -> a != null)
 	 * 
-	 * if balls[i] is out of field, balls[i] is set to null (same for alpha).
+	 * if ball i is out of field, its slot is cleared with balls.clear(i) (alphas[i] is set to null).
 	 * Note that this means the private invariant is momentarily broken.
 	 * 
 	 * this method should unlink the balls/alphas out of bound before dereferencing them.
@@ -462,22 +1243,73 @@ public class BreakoutState {
 	}
 
 	private void bouncePreBallsOnWalls() {
-		for(int i = 0; i < balls.length; ++i) {
-			bounceWalls(balls[i]);
+		int candidates = balls.queryBorder(bottomRight);
+		for(int k = 0; k < candidates; ++k) {
+			bounceBallOnWalls(balls.getCandidate(k));
+		}
+		for(int i = 0; i < alphaCount; ++i) {
+			bounceAlphaOnWalls(i);
+		}
+	}
+
+	// magnetism: an alpha that moves or hits a wall may change the balls linked to it. Those are brought up to date
+	// before and read back into the ball table after, like a ball around its own collisions.
+	private void bounceAlphaOnWalls(int a) {
+		materializeLinkedBalls(a);
+		bounceWalls(alphas[a]);
+		absorbLinkedBalls(a);
+	}
+
+	private void materializeLinkedBalls(int a) {
+		for (int k = 0; k < links.alphaDegree(a); ++k) {
+			balls.materialize(links.alphaPeer(a, k));
 		}
-		for(int i = 0; i < alphas.length; ++i) {
-			bounceWalls(alphas[i]);
+	}
+
+	private void absorbLinkedBalls(int a) {
+		for (int k = 0; k < links.alphaDegree(a); ++k) {
+			balls.absorb(links.alphaPeer(a, k));
 		}
 	}
 
+	private void bounceBallOnWalls(int i) {
+		if (balls.isObjectPath() || balls.touchesBorder(i, bottomRight)) {
+			bounceWalls(balls.materialize(i));
+			balls.absorb(i);
+		}
+	}
+
+	// whether ball i is below the field (see belowLimit), materializing it only when it is near the border.
+	private boolean leftField(int i) {
+		return (balls.isObjectPath() || balls.touchesBorder(i, bottomRight)) && belowLimit(balls.materialize(i));
+	}
+
 	
 	private void stepPreBalls(int elapsedTime) {
-		for(int i = 0; i < balls.length; ++i) {
-			balls[i].move(balls[i].getVelocity().scaled(elapsedTime), elapsedTime);
+		balls.integrate(elapsedTime);
+		for(int i = 0; i < alphaCount; ++i) {
+			moveAlpha(i, elapsedTime);
+		}
+	}
+
+	// moves alphas[i] by its velocity over elapsedTime, reusing the cached displacement (see alphaSteps).
+	// Its linked balls are kept in sync with the ball table, see bounceAlphaOnWalls.
+	private void moveAlpha(int i, int elapsedTime) {
+		if (alphaSteps.length < alphas.length) {
+			alphaSteps = new Vector[alphas.length];
+			alphaStepVelocities = new Vector[alphas.length];
+		} else if (elapsedTime != alphaStepTime) {
+			Arrays.fill(alphaStepVelocities, null);
 		}
-		for(int i = 0; i < alphas.length; ++i) {
-			alphas[i].move(alphas[i].getVelocity().scaled(elapsedTime), elapsedTime);
+		alphaStepTime = elapsedTime;
+		Vector velocity = alphas[i].getVelocity();
+		if (alphaStepVelocities[i] != velocity) {
+			alphaStepVelocities[i] = velocity;
+			alphaSteps[i] = velocity.scaled(elapsedTime);
 		}
+		materializeLinkedBalls(i);
+		alphas[i].move(alphaSteps[i], elapsedTime);
+		absorbLinkedBalls(i);
 	}
 	
 	/**
@@ -488,6 +1320,9 @@ public class BreakoutState {
 	 * @mutates | this
 	 */
 	public void movePaddleRight(int elapsedTime) {
+		if (journal != null) {
+			journal.recordMoveRight(elapsedTime);
+		}
 		paddle.move(Constants.PADDLE_VEL.scaled(elapsedTime), getField());
 	}
 
@@ -499,6 +1334,9 @@ public class BreakoutState {
 	 * @mutates | this
 	 */
 	public void movePaddleLeft(int elapsedTime) {
+		if (journal != null) {
+			journal.recordMoveLeft(elapsedTime);
+		}
 		paddle.move(Constants.PADDLE_VEL.scaled(-elapsedTime), getField());
 	}
 
@@ -506,12 +1344,13 @@ public class BreakoutState {
 	 * LEGIT
 	 * 
 	 * Return whether this BreakoutState represents a game where the player has won.
+	 * Reads the live counters of the block store and the ball table, so this does not allocate.
 	 * 
 	 * @post | result == (getBlocks().length == 0 && !isDead())
 	 * @inspects | this
 	 */
 	public boolean isWon() {
-		return getBlocks().length == 0 && !isDead();
+		return blocks.getLiveCount() == 0 && !isDead();
 	}
 
 	/**
@@ -523,12 +1362,19 @@ public class BreakoutState {
 	 * @inspects | this
 	 */
 	public boolean isDead() {
-		return getBalls().length == 0;
+		return balls.getLiveCount() == 0;
 	}
 
 	private void noLongerSuperCharged() {
-		for (int i = 0 ; i < balls.length ; i++) {
-			balls[i] = balls[i].backToNormal();
+		for (int i = 0 ; i < balls.size() ; i++) {
+			ballBackToNormal(i);
+		}
+	}
+
+	private void ballBackToNormal(int i) {
+		//normal balls stay normal, no need to materialize them.
+		if (balls.isObjectPath() || balls.getKind(i) != BallTable.NORMAL) {
+			balls.set(i, balls.materialize(i).backToNormal());
 		}
 	}
 }
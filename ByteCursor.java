@@ -0,0 +1,121 @@
+package breakout;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads the encodings of ByteSink from a byte array or a ByteBuffer, which may be a mapped file.
+ * The cursor reads the buffer by absolute index: it neither copies nor moves the buffer.
+ * Malformed or truncated data makes the reads throw IllegalArgumentException.
+ */
+final class ByteCursor {
+
+	private final ByteBuffer data;
+	private final int end;
+	private int position;
+
+	/**
+	 * A cursor over data[position .. data.length - 1].
+	 */
+	ByteCursor(byte[] data, int position) {
+		this(data, position, data.length);
+	}
+
+	/**
+	 * A cursor over data[position .. end - 1].
+	 *
+	 * @throws IllegalArgumentException | position < 0 || position > end || end > data.length
+	 */
+	ByteCursor(byte[] data, int position, int end) {
+		this(ByteBuffer.wrap(data), position, end);
+	}
+
+	/**
+	 * A cursor over the remaining bytes of `buffer`, i.e. those from its position up to its limit.
+	 * Positions of the cursor are indexes in the buffer.
+	 */
+	ByteCursor(ByteBuffer buffer) {
+		this(buffer, buffer.position(), buffer.limit());
+	}
+
+	private ByteCursor(ByteBuffer data, int position, int end) {
+		if (position < 0 || position > end || end > data.limit())
+			throw new IllegalArgumentException("truncated data");
+		this.data = data;
+		this.position = position;
+		this.end = end;
+	}
+
+	int position() {
+		return position;
+	}
+
+	boolean hasMore() {
+		return position < end;
+	}
+
+	void skip(int count) {
+		if (count < 0 || count > end - position)
+			throw new IllegalArgumentException("truncated data");
+		position += count;
+	}
+
+	int readByte() {
+		if (position >= end)
+			throw new IllegalArgumentException("truncated data");
+		return data.get(position++) & 0xFF;
+	}
+
+	int readInt() {
+		int res = 0;
+		for (int k = 0; k < 4; ++k) {
+			res = (res << 8) | readByte();
+		}
+		return res;
+	}
+
+	long readLong() {
+		long res = 0;
+		for (int k = 0; k < 8; ++k) {
+			res = (res << 8) | readByte();
+		}
+		return res;
+	}
+
+	long readVarLong() {
+		long res = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = readByte();
+			res |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return res;
+			}
+		}
+		throw new IllegalArgumentException("corrupt varint");
+	}
+
+	long readSignedVarLong() {
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * A varint that must lie in [0, max].
+	 */
+	int readVarInt(int max) {
+		long res = readVarLong();
+		if (res < 0 || res > max)
+			throw new IllegalArgumentException("value out of range");
+		return (int) res;
+	}
+
+	/**
+	 * A signed varint that must fit in an int.
+	 */
+	int readSignedVarInt() {
+		long res = readSignedVarLong();
+		if (res < Integer.MIN_VALUE || res > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("value out of range");
+		return (int) res;
+	}
+
+}
@@ -0,0 +1,94 @@
+package breakout;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable byte buffer with the compact encodings shared by journals and state snapshots, see ByteCursor.
+ */
+final class ByteSink {
+
+	/**
+	 * data[0 .. length - 1] are the bytes written so far.
+	 *
+	 * @representationObject
+	 */
+	private byte[] data = new byte[64];
+	private int length;
+
+	int length() {
+		return length;
+	}
+
+	private void ensure(int extra) {
+		if (length + extra > data.length) {
+			data = Arrays.copyOf(data, Math.max(length + extra, 2 * data.length));
+		}
+	}
+
+	void writeByte(int b) {
+		ensure(1);
+		data[length++] = (byte) b;
+	}
+
+	void write(byte[] bytes, int offset, int count) {
+		ensure(count);
+		System.arraycopy(bytes, offset, data, length, count);
+		length += count;
+	}
+
+	/**
+	 * Append everything written to `other`.
+	 */
+	void write(ByteSink other) {
+		write(other.data, 0, other.length);
+	}
+
+	void writeInt(int value) {
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			writeByte(value >>> shift);
+		}
+	}
+
+	void writeLong(long value) {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			writeByte((int) (value >>> shift));
+		}
+	}
+
+	/**
+	 * Seven bits per byte, least significant first; the high bit tells whether more bytes follow.
+	 * Small non-negative values take one byte.
+	 */
+	void writeVarLong(long value) {
+		while ((value & ~0x7FL) != 0) {
+			writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		writeByte((int) value);
+	}
+
+	/**
+	 * A varint of the zigzag code of value (0, -1, 1, -2, ... map to 0, 1, 2, 3, ...),
+	 * so values of small magnitude take one byte whatever their sign.
+	 */
+	void writeSignedVarLong(long value) {
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	/**
+	 * @creates | result
+	 */
+	byte[] toByteArray() {
+		return Arrays.copyOf(data, length);
+	}
+
+	/**
+	 * A read-only view of the bytes written so far, e.g. for a channel write without copying them.
+	 * It is only valid until the next write.
+	 */
+	ByteBuffer view() {
+		return ByteBuffer.wrap(data, 0, length).asReadOnlyBuffer();
+	}
+
+}
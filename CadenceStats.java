@@ -0,0 +1,80 @@
+package breakout;
+
+/**
+ * Running statistics over the intervals between consecutive events (ticks, paints, ...),
+ * plus the duration of the events themselves.
+ *
+ * Written by a single thread, readable from any thread: the fields are volatile and each one is only
+ * ever written by the recording thread, so readers see consistent (if slightly stale) values without locking.
+ */
+final class CadenceStats {
+
+	private volatile long count;
+	private volatile long lastStartNanos;
+	private volatile long lastIntervalNanos;
+	private volatile long maxIntervalNanos;
+	private volatile long totalIntervalNanos;
+	private volatile long lastDurationNanos;
+	private volatile long maxDurationNanos;
+	private volatile long totalDurationNanos;
+
+	/**
+	 * Record an event that started at startNanos and ended at endNanos (System.nanoTime() values).
+	 * Only the owning thread may call this.
+	 *
+	 * @pre | startNanos <= endNanos
+	 */
+	void record(long startNanos, long endNanos) {
+		long n = count;
+		if (n > 0) {
+			long interval = startNanos - lastStartNanos;
+			lastIntervalNanos = interval;
+			maxIntervalNanos = Math.max(maxIntervalNanos, interval);
+			totalIntervalNanos += interval;
+		}
+		long duration = endNanos - startNanos;
+		lastDurationNanos = duration;
+		maxDurationNanos = Math.max(maxDurationNanos, duration);
+		totalDurationNanos += duration;
+		lastStartNanos = startNanos;
+		count = n + 1;
+	}
+
+	long getCount() {
+		return count;
+	}
+
+	long getLastIntervalNanos() {
+		return lastIntervalNanos;
+	}
+
+	long getMaxIntervalNanos() {
+		return maxIntervalNanos;
+	}
+
+	double getMeanIntervalNanos() {
+		long n = count;
+		return n < 2 ? 0 : totalIntervalNanos / (double) (n - 1);
+	}
+
+	long getLastDurationNanos() {
+		return lastDurationNanos;
+	}
+
+	long getMaxDurationNanos() {
+		return maxDurationNanos;
+	}
+
+	double getMeanDurationNanos() {
+		long n = count;
+		return n == 0 ? 0 : totalDurationNanos / (double) n;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d interval mean=%.2fms max=%.2fms duration mean=%.3fms max=%.3fms",
+				getCount(), getMeanIntervalNanos() / 1e6, getMaxIntervalNanos() / 1e6,
+				getMeanDurationNanos() / 1e6, getMaxDurationNanos() / 1e6);
+	}
+
+}
@@ -0,0 +1,292 @@
+package breakout;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+import breakout.utils.Circle;
+import breakout.utils.Point;
+import breakout.utils.Vector;
+
+/**
+ * Paints RenderFrames onto any Graphics: the Swing GameView and the actively rendered ActiveGameView share it.
+ *
+ * Blocks only change when they are hit, so they are drawn once into an offscreen layer that is blitted every frame.
+ * When the blocks of a new frame differ from the layer's, only the blocks that were destroyed or changed are
+ * redrawn into it. damage() computes the part of the view that changes between two frames, for views that can
+ * repaint a region only.
+ *
+ * A painter is confined to the thread that paints with it.
+ */
+class FramePainter {
+
+	private static final int DEFAULT_REFRESH_RATE = 60;
+
+	/**
+	 * Receives a block that differs between two frames: color is its new color, or null if it was destroyed.
+	 */
+	@FunctionalInterface
+	private interface BlockChange {
+		void changed(int left, int top, int right, int bottom, Color color);
+	}
+
+	/**
+	 * The blocks of blockLayerFrame, on a transparent background. null until the first paint.
+	 *
+	 * @representationObject
+	 */
+	private BufferedImage blockLayer;
+	private RenderFrame blockLayerFrame;
+
+	/**
+	 * The refresh rate of the default screen, in Hz, or DEFAULT_REFRESH_RATE if it is unknown.
+	 * Views paint at this rate, independently of the ticks.
+	 *
+	 * @post | result > 0
+	 */
+	static int refreshRate() {
+		if (GraphicsEnvironment.isHeadless()) {
+			return DEFAULT_REFRESH_RATE;
+		}
+		int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+				.getDisplayMode().getRefreshRate();
+		return rate > 0 ? rate : DEFAULT_REFRESH_RATE;
+	}
+
+	/**
+	 * The size a component needs to show a field with the given bottom right corner.
+	 */
+	static Dimension preferredSize(Point bottomRight) {
+		Point size = toGUICoord(bottomRight.plus(new Vector(200,200)));
+		return new Dimension(size.getX(), size.getY());
+	}
+
+	/**
+	 * Paint `frame`, with its moving entities `alpha` of the way from the previous frame to this one,
+	 * on top of whatever g already shows.
+	 *
+	 * @pre | 0 <= alpha && alpha <= 1
+	 */
+	void paint(Graphics g, RenderFrame frame, double alpha, Point bottomRight) {
+		updateBlockLayer(frame, bottomRight);
+
+		Point botRight = toGUICoord(bottomRight);
+		g.setColor(Color.black);
+		g.drawRect(0,0,botRight.getX(),botRight.getY());
+		
+		paintPaddle(g, frame, alpha);
+		paintBalls(g, frame, alpha);
+		paintAlphas(g, frame, alpha);
+		g.drawImage(blockLayer, 0, 0, null);
+		paintLinks(g, frame, alpha);
+		paintReplSources(g);
+	}
+
+	// Convert point in the game coordinate system to the GUI coordinate system.
+	private static Point toGUICoord(Point loc) {
+		return new Point(loc.getX()/50, loc.getY()/50).plus(new Vector(5,5));
+	}
+
+	// Convert a game coordinate to the GUI coordinate system, see toGUICoord.
+	private static int toGUI(int coord) {
+		return coord / 50 + 5;
+	}
+
+	// moving entities are painted `alpha` of the way from the previous frame to the latest one.
+	private static void paintPaddle(Graphics g, RenderFrame frame, double alpha) {
+		int left = frame.getPaddle(0, alpha);
+		int top = frame.getPaddle(1, alpha);
+		int right = frame.getPaddle(2, alpha);
+		int bottom = frame.getPaddle(3, alpha);
+		if (frame.getPaddleColorCount() == 1) {
+			paintGameRect(g, frame.getPaddleColor(0), left, top, right, bottom);
+		}
+		else {
+			int third = Constants.PADDLE_WIDTH / 3;
+			paintGameRect(g, frame.getPaddleColor(0), left, top, left + third, bottom);
+			paintGameRect(g, frame.getPaddleColor(1), left + third, top, left + 2 * third, bottom);
+			paintGameRect(g, frame.getPaddleColor(2), left + 2 * third, top, right, bottom);
+		}
+	}
+	
+	private static void paintGameRect(Graphics g, Color c, int left, int top, int right, int bottom) {
+		g.setColor(c);
+		int guiLeft = toGUI(left);
+		int guiTop = toGUI(top);
+		g.fillRect(guiLeft, guiTop, toGUI(right) - guiLeft, toGUI(bottom) - guiTop);
+	}
+
+	private static void paintBalls(Graphics g, RenderFrame frame, double alpha) {
+		for (int i = 0; i < frame.getBallCount(); ++i) {
+			int x = frame.getBall(i, 0, alpha);
+			int y = frame.getBall(i, 1, alpha);
+			g.setColor(frame.getBallColor(i));
+			int radius = frame.getBall(i, 2) / 2;
+			int guiLeft = toGUI(x - radius);
+			int guiTop = toGUI(y - radius);
+			g.fillOval(guiLeft, guiTop, toGUI(x + radius) - guiLeft, toGUI(y + radius) - guiTop);
+		}
+	}
+	
+	private static void paintAlphas(Graphics g, RenderFrame frame, double alpha) {
+		for (int i = 0; i < frame.getAlphaCount(); ++i) {
+			int x = frame.getAlpha(i, 0, alpha);
+			int y = frame.getAlpha(i, 1, alpha);
+			int diameter = frame.getAlpha(i, 2);
+			int radius = diameter / 2;
+			//alphas are squished ovals for now
+			g.setColor(frame.getAlphaColor(i));
+			g.fillOval(toGUI(x - radius), toGUI(y - radius / 2), diameter / 50, radius / 50);
+		}
+	}
+	
+	private static void paintLinks(Graphics g, RenderFrame frame, double alpha) {
+		g.setColor(Color.red);  
+		for (int i = 0; i < frame.getLinkCount(); ++i) {
+			g.drawLine(toGUI(frame.getLink(i, 0, alpha)), toGUI(frame.getLink(i, 1, alpha)),
+					toGUI(frame.getLink(i, 2, alpha)), toGUI(frame.getLink(i, 3, alpha)));
+		}
+	}
+
+	private static void paintBlocks(Graphics g, RenderFrame frame) {
+		for (int i = 0; i < frame.getBlockCount(); ++i) {
+			paintGameRect(g, frame.getBlockColor(i),
+					frame.getBlock(i, 0), frame.getBlock(i, 1), frame.getBlock(i, 2), frame.getBlock(i, 3));
+		}
+	}
+
+	private void updateBlockLayer(RenderFrame frame, Point bottomRight) {
+		if (frame.sameBlocksAs(blockLayerFrame)) {
+			return;
+		}
+		Dimension size = preferredSize(bottomRight);
+		boolean fresh = blockLayer == null
+				|| blockLayer.getWidth() != size.width || blockLayer.getHeight() != size.height;
+		if (fresh) {
+			blockLayer = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_ARGB);
+		}
+		Graphics2D lg = blockLayer.createGraphics();
+		try {
+			boolean patched = !fresh && diffBlocks(blockLayerFrame, frame, (left, top, right, bottom, color) -> {
+				int guiLeft = toGUI(left);
+				int guiTop = toGUI(top);
+				lg.setComposite(AlphaComposite.Clear);
+				lg.fillRect(guiLeft, guiTop, toGUI(right) - guiLeft, toGUI(bottom) - guiTop);
+				lg.setComposite(AlphaComposite.SrcOver);
+				if (color != null) {
+					paintGameRect(lg, color, left, top, right, bottom);
+				}
+			});
+			if (!patched) {
+				lg.setComposite(AlphaComposite.Clear);
+				lg.fillRect(0, 0, size.width, size.height);
+				lg.setComposite(AlphaComposite.SrcOver);
+				paintBlocks(lg, frame);
+			}
+		} finally {
+			lg.dispose();
+		}
+		blockLayerFrame = frame;
+	}
+
+	/**
+	 * Pass the blocks that differ from `from` to `to`, assuming `to` results from `from` by hits only:
+	 * blocks keep their order and location, and are destroyed or changed but never created.
+	 * Returns false, possibly after passing some changes, if `to` cannot be explained that way.
+	 */
+	private static boolean diffBlocks(RenderFrame from, RenderFrame to, BlockChange sink) {
+		int j = 0;
+		for (int i = 0; i < from.getBlockCount(); ++i) {
+			int left = from.getBlock(i, 0);
+			int top = from.getBlock(i, 1);
+			int right = from.getBlock(i, 2);
+			int bottom = from.getBlock(i, 3);
+			if (j < to.getBlockCount() && to.getBlock(j, 0) == left && to.getBlock(j, 1) == top
+					&& to.getBlock(j, 2) == right && to.getBlock(j, 3) == bottom) {
+				if (!to.getBlockColor(j).equals(from.getBlockColor(i))) {
+					sink.changed(left, top, right, bottom, to.getBlockColor(j));
+				}
+				j++;
+			} else {
+				sink.changed(left, top, right, bottom, null);
+			}
+		}
+		return j == to.getBlockCount();
+	}
+
+	/**
+	 * The region of the view, in GUI coordinates, whose pixels may differ between painting `from` and painting `to`,
+	 * at any interpolation. Everything changes if `from` is null.
+	 * Moving entities are covered at their previous and current positions in both frames.
+	 *
+	 * @pre | to != null
+	 * @post | result != null
+	 */
+	static Rectangle damage(RenderFrame from, RenderFrame to, Point bottomRight) {
+		Dimension size = preferredSize(bottomRight);
+		Rectangle everything = new Rectangle(0, 0, size.width, size.height);
+		if (from == null) {
+			return everything;
+		}
+		Rectangle res = new Rectangle(-1, -1);
+		addMoving(res, to, 0);
+		addMoving(res, to, 1);
+		addMoving(res, from, 0);
+		addMoving(res, from, 1);
+		if (!to.sameBlocksAs(from)
+				&& !diffBlocks(from, to, (left, top, right, bottom, color) -> addGameRect(res, left, top, right, bottom))) {
+			return everything;
+		}
+		return res;
+	}
+
+	private static void addMoving(Rectangle res, RenderFrame frame, double alpha) {
+		addGameRect(res, frame.getPaddle(0, alpha), frame.getPaddle(1, alpha),
+				frame.getPaddle(2, alpha), frame.getPaddle(3, alpha));
+		for (int i = 0; i < frame.getBallCount(); ++i) {
+			int radius = frame.getBall(i, 2) / 2;
+			int x = frame.getBall(i, 0, alpha);
+			int y = frame.getBall(i, 1, alpha);
+			addGameRect(res, x - radius, y - radius, x + radius, y + radius);
+		}
+		for (int i = 0; i < frame.getAlphaCount(); ++i) {
+			int radius = frame.getAlpha(i, 2) / 2;
+			int x = frame.getAlpha(i, 0, alpha);
+			int y = frame.getAlpha(i, 1, alpha);
+			addGameRect(res, x - radius, y - radius, x + radius, y + radius);
+		}
+		for (int i = 0; i < frame.getLinkCount(); ++i) {
+			int x1 = frame.getLink(i, 0, alpha);
+			int y1 = frame.getLink(i, 1, alpha);
+			int x2 = frame.getLink(i, 2, alpha);
+			int y2 = frame.getLink(i, 3, alpha);
+			addGameRect(res, Math.min(x1, x2), Math.min(y1, y2), Math.max(x1, x2), Math.max(y1, y2));
+		}
+	}
+
+	// one extra pixel on every side covers the rounding of toGUI and the outline of drawn shapes.
+	private static void addGameRect(Rectangle res, int left, int top, int right, int bottom) {
+		int guiLeft = toGUI(left) - 1;
+		int guiTop = toGUI(top) - 1;
+		res.add(new Rectangle(guiLeft, guiTop, toGUI(right) + 2 - guiLeft, toGUI(bottom) + 2 - guiTop));
+	}
+	
+	private static void paintReplSources(Graphics g) {
+		g.setColor(Color.blue);
+		for (Point rsource : Constants.REPL_SOURCE()) {
+			Circle c = new Circle( rsource, 1500);
+			Point tl = c.getTopLeftPoint();
+			Point br = c.getBottomRightPoint();
+			Point guiTl = toGUICoord(tl);
+			Point guiBr = toGUICoord(br);
+			//Point guiSource = toGUICoord( rsource );
+		    g.drawOval(guiTl.getX(), guiTl.getY(), guiBr.getX()- guiTl.getX(), (guiBr.getY()-guiTl.getY() ) / 2);
+		}
+	}
+
+}
@@ -47,6 +47,19 @@ public class GameMap {
 
 	
 	
+	/**
+	 * Return the initial breakout state represented by string `description`, whose random choices are drawn
+	 * from a generator seeded with `seed`.
+	 * 
+	 * @pre | description != null
+	 * @post | result != null
+	 */
+	public static BreakoutState createStateFromDescription(String description, long seed) {
+		BreakoutState res = createStateFromDescription(description);
+		res.setSeed(seed);
+		return res;
+	}
+
 	/**
 	 * Return the initial breakout state represented by string `description`.
 	 * 
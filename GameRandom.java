@@ -0,0 +1,79 @@
+package breakout;
+
+/**
+ * The source of all randomness of a game: a SplitMix64 generator (the algorithm behind java.util.SplittableRandom)
+ * whose whole state is one long, so it can be saved and restored exactly.
+ *
+ * Given the same seed, a GameRandom produces the same sequence on every platform and every run.
+ * Unlike java.util.Random it is not thread-safe and does no atomic seed updates: each game owns its own instance.
+ */
+public final class GameRandom {
+
+	/**
+	 * The seed of games that were not given one.
+	 */
+	public static final long DEFAULT_SEED = 0x5EED_B4E4_C0DEL;
+
+	private static final long GOLDEN_GAMMA = 0x9E37_79B9_7F4A_7C15L;
+
+	private long state;
+
+	/**
+	 * @post | getState() == seed
+	 */
+	public GameRandom(long seed) {
+		this.state = seed;
+	}
+
+	/**
+	 * The complete state of this generator: a generator with the same state produces the same sequence.
+	 */
+	public long getState() {
+		return state;
+	}
+
+	/**
+	 * @mutates | this
+	 * @post | getState() == state
+	 */
+	public void setState(long state) {
+		this.state = state;
+	}
+
+	/**
+	 * @mutates | this
+	 */
+	public long nextLong() {
+		return mix(state += GOLDEN_GAMMA);
+	}
+
+	/**
+	 * The SplitMix64 finalizer: a bijection on longs that spreads every input bit over all output bits.
+	 */
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58_476D_1CE4_E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D0_49BB_1331_11EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Returns a uniformly distributed int in [0, bound).
+	 *
+	 * @throws IllegalArgumentException | bound <= 0
+	 * @mutates | this
+	 * @post | 0 <= result && result < bound
+	 */
+	public int nextInt(int bound) {
+		if (bound <= 0)
+			throw new IllegalArgumentException();
+		// reject the top values that would make the remainder biased.
+		int bits;
+		int res;
+		do {
+			bits = (int) (nextLong() >>> 33);
+			res = bits % bound;
+		} while (bits - res + (bound - 1) < 0);
+		return res;
+	}
+
+}
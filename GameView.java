@@ -3,43 +3,69 @@ package breakout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 import java.awt.Toolkit;
-import java.awt.event.KeyAdapter;
-import java.awt.event.KeyEvent;
 
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
-import breakout.radioactivity.Alpha;
-import breakout.radioactivity.Ball;
-import breakout.utils.Circle;
-import breakout.utils.Point;
-import breakout.utils.Rect;
-import breakout.utils.Vector;
-
 @SuppressWarnings("serial")
 public class GameView extends JPanel {
 	
-
-	
-	long prevTimestamp = 0;
-	
 	public BreakoutState breakoutState;
-	private Timer ballTimer;
-	private boolean leftKeyDown = false;
-	private boolean rightKeyDown = false;
+	/**
+	 * Ticks breakoutState on its own thread; this view only reads the frames it publishes.
+	 */
+	private final SimulationLoop simulation;
+	private final FramePainter painter = new FramePainter();
+	private final CadenceStats paintStats = new CadenceStats();
+	private boolean gameOverShown = false;
+	/**
+	 * Fires refreshDisplay on the EDT at the display's refresh rate, while this view is displayable.
+	 */
+	private final Timer displayTimer;
+	/**
+	 * The frame of the last repaint request, or null before the first one. Only accessed on the EDT.
+	 */
+	private RenderFrame requestedFrame;
+	/**
+	 * Whether the last repaint request already showed requestedFrame at the end of its interpolation.
+	 */
+	private boolean settled;
 	
-	private void gameChanged() {
-		repaint(10);
+	private void gameChanged(RenderFrame frame) {
+		// called on the simulation thread: painting is paced by displayTimer, not by the ticks.
+		if (frame.isDead() || frame.isWon()) {
+			SwingUtilities.invokeLater(() -> gameOver(frame));
+		}
+	}
+
+	/**
+	 * Request a repaint of whatever moved since the last request: the interpolated positions change with every
+	 * refresh of the display, not only when a frame is published. Once the latest frame is shown at the end of
+	 * its interpolation, nothing is repainted until the next one.
+	 */
+	private void refreshDisplay() {
+		RenderFrame frame = simulation.getLatestFrame();
+		if (frame == requestedFrame && settled) {
+			return;
+		}
+		Rectangle dirty = FramePainter.damage(frame == requestedFrame ? frame : requestedFrame, frame,
+				breakoutState.getBottomRight());
+		settled = frame.interpolationAt(System.nanoTime(), simulation.getTickPeriod()) >= 1;
+		requestedFrame = frame;
+		repaint(dirty);
 	}
 	
-	private void startMovingBalls() {
-		ballTimer = new Timer(Constants.BALL_DELAYMS, actionEvent -> {
-			long timestamp = System.currentTimeMillis();
-			moveBalls(timestamp);
-		});
-		ballTimer.start();
+	private void gameOver(RenderFrame frame) {
+		if (gameOverShown) {
+			return;
+		}
+		gameOverShown = true;
+		JOptionPane.showMessageDialog(this, frame.isDead() ? "Game over :-(" : "Gewonnen!");
+		System.exit(0);
 	}
 	
 	/**
@@ -48,61 +74,51 @@ public class GameView extends JPanel {
 	 */
 	public GameView(BreakoutState breakoutState) {
 		this.breakoutState = breakoutState;
+		this.simulation = new SimulationLoop(breakoutState, Constants.BALL_DELAYMS, this::gameChanged);
+		this.displayTimer = new Timer(Math.max(1, 1000 / FramePainter.refreshRate()), e -> refreshDisplay());
 
 		setBackground(Color.black);
 		
-		addKeyListener(new KeyAdapter() {
-			@Override
-			public void keyPressed(KeyEvent e) {
-				switch (e.getKeyCode()) {
-				case KeyEvent.VK_RIGHT -> { rightKeyDown = true; break; }
-				case KeyEvent.VK_LEFT -> { leftKeyDown = true; break; }		
-				}
-			}
-			@Override
-			public void keyReleased(KeyEvent e) {
-				switch (e.getKeyCode()) {
-				case KeyEvent.VK_RIGHT -> { rightKeyDown = false; break; }
-				case KeyEvent.VK_LEFT -> { leftKeyDown = false; break; }
-				}
-			}
-		});
-		startMovingBalls();
+		addKeyListener(simulation.createKeyListener());
+		simulation.start();
 	}
-	
-	private void moveBalls(long timestamp) {
-		if (prevTimestamp != 0) {
-			int elapsedTime = (int) (timestamp - prevTimestamp);
-			// very high elapsed times (for example during debugging) are annoying.
-			elapsedTime = Math.min(elapsedTime, Constants.MAX_ELAPSED_TIME);
 
-			int curPaddleDir = 0;
-			if (leftKeyDown && !rightKeyDown) {
-				breakoutState.movePaddleLeft(elapsedTime);
-				curPaddleDir = -1;
-			}
-			if (!leftKeyDown && rightKeyDown) {
-				breakoutState.movePaddleRight(elapsedTime);
-				curPaddleDir = 1;
-			}
-			breakoutState.tick(curPaddleDir, elapsedTime);
-			if (breakoutState.isDead()) {
-				JOptionPane.showMessageDialog(this, "Game over :-(");
-				System.exit(0);
-			}
-			if (breakoutState.isWon()) {
-				JOptionPane.showMessageDialog(this, "Gewonnen!");
-				System.exit(0);
-			}
-			gameChanged();
-		}
-		prevTimestamp = timestamp;
+	/**
+	 * Cadence and duration of the simulation ticks.
+	 */
+	CadenceStats getTickStats() {
+		return simulation.getTickStats();
+	}
+
+	/**
+	 * Cadence and duration of the paints, independent of the ticks.
+	 */
+	CadenceStats getPaintStats() {
+		return paintStats;
+	}
+
+	/**
+	 * Stop ticking the game, so that this view keeps showing the last frame, e.g. to benchmark painting it.
+	 */
+	void stopSimulation() {
+		simulation.stop();
+	}
+
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		displayTimer.start();
+	}
+
+	@Override
+	public void removeNotify() {
+		displayTimer.stop();
+		super.removeNotify();
 	}
 
 	@Override
 	public Dimension getPreferredSize() {
-		Point size = toGUICoord(breakoutState.getBottomRight().plus(new Vector(200,200)));
-		return new Dimension(size.getX(), size.getY());
+		return FramePainter.preferredSize(breakoutState.getBottomRight());
 	}
 	
 	@Override
@@ -110,153 +126,19 @@ public class GameView extends JPanel {
 		return true;
 	}
 	
-	// Convert point in the game coordinate system to the GUI coordinate system.
-	private Point toGUICoord(Point loc) {
-		return new Point(loc.getX()/50, loc.getY()/50).plus(new Vector(5,5));
-	}
-	
 	@Override
 	protected void paintComponent(Graphics g) {
+		long start = System.nanoTime();
 		super.paintComponent(g);
-		
-		Point botRight = toGUICoord(breakoutState.getBottomRight());
-		g.setColor(Color.black);
-		g.drawRect(0,0,botRight.getX(),botRight.getY());
-		
-		paintPaddle(g);
-		paintBalls(g);
-		paintAlphas(g);
-		paintBlocks(g);
-		paintLinks(g);
-		paintReplSources(g);
+		RenderFrame frame = simulation.getLatestFrame();
+		double alpha = frame.interpolationAt(start, simulation.getTickPeriod());
+		painter.paint(g, frame, alpha, breakoutState.getBottomRight());
 		
 		//TODO
 		
 		// domi: this fixes a visual latency bug on my system...
 		Toolkit.getDefaultToolkit().sync();
-	}
-
-	private void paintPaddle(Graphics g) {
-		PaddleState paddle = breakoutState.getPaddle();
-		Color[] cols = paddle.getActualColors();
-		if (cols.length == 1) {
-			g.setColor( cols[0] );
-			Rect loc = paddle.getLocation();
-			Point tl = loc.getTopLeft();
-			Point br = loc.getBottomRight();
-			paintPaddle(g, tl, br);	
-		}
-		else {
-			Point tl = paddle.getLocation().getTopLeft();
-			Point br = paddle.getLocation().getBottomRight();
-			Rect rect0 = new Rect(
-					tl,
-					new Point(tl.getX() + (Constants.PADDLE_WIDTH / 3), br.getY()));
-			Rect rect1 = new Rect(
-					new Point( tl.getX() + (Constants.PADDLE_WIDTH / 3), tl.getY() ),
-					new Point( tl.getX() + 2 * (Constants.PADDLE_WIDTH / 3) , br.getY() ));
-			Rect rect2 = new Rect(
-					new Point( tl.getX() + 2 * (Constants.PADDLE_WIDTH / 3) , tl.getY() ),
-					br);
-			Rect[] rects = new Rect[] {rect0, rect1, rect2};
-			for (int i = 0 ; i < 3 ; i++) {
-				paintGameRect(g , cols[i] , rects[i]);
-			}
-		}
-
-	}
-
-	private void paintPaddle(Graphics g, Point tlg, Point brg) {
-		Point tl = toGUICoord(tlg);
-		Point br = toGUICoord(brg);
-		g.fillRect(tl.getX(),tl.getY(),br.getX()-tl.getX(),br.getY()-tl.getY());
-	}
-	
-	private void paintGameRect( Graphics g, Color c, Rect r) {
-		g.setColor(c);
-		Point guitl = toGUICoord(r .getTopLeft());
-		Point guibr = toGUICoord(r .getBottomRight());
-		g.fillRect(guitl.getX(),guitl.getY(),guibr.getX()-guitl.getX(),guibr.getY()-guitl.getY());
-	}
-
-	private void paintBalls(Graphics g) {
-		for (Ball ball : breakoutState.getBalls()) {
-			g.setColor(ball.getColor());
-			Circle c = ball.getLocation();
-			Point tl = c.getTopLeftPoint();
-			Point br = c.getBottomRightPoint(); 
-			paintBall(g, tl, br);
-		}
-	}
-
-	private void paintBall(Graphics g, Point tlg, Point brg) {
-		Point tl = toGUICoord(tlg);
-		Point br = toGUICoord(brg);
-		g.fillOval(tl.getX(),tl.getY(),br.getX()-tl.getX(), br.getY()-tl.getY());
-	}
-	
-	private void paintAlphas(Graphics g) {
-		for (Alpha alpha : breakoutState.getAlphas()) {
-			Point center = alpha.getCenter();
-			int diam = alpha.getLocation().getDiameter();
-			int radius = diam/2;
-			Point tl = center.plus(new Vector(-radius,-radius / 2)); //alphas are squished ovals for now
-			Color color = alpha.getColor();
-			paintAlpha(g, color, tl, diam, radius);
-			
-		}
-	}
-	
-	private void paintAlpha(Graphics g, Color color, Point tlg , int width, int height) {
-		g.setColor(color);
-		Point tl = toGUICoord(tlg);
-		g.fillOval(tl.getX(), tl.getY(), width/50 , height/50);
-	}
-	
-	private void paintLinks(Graphics g) {
-		g.setColor(Color.red);  
-
-	    for (Ball ball : breakoutState.getBalls()) {
-	        for (Alpha alpha : ball.getAlphas()) {
-	           
-	            Point ballCenter = toGUICoord(ball.getLocation().getCenter());
-	            Point alphaCenter = toGUICoord(alpha.getCenter());
-
-	            g.drawLine(ballCenter.getX(), ballCenter.getY(), alphaCenter.getX(), alphaCenter.getY());
-	        }
-	    }
-	
-		
-		
-	}
-	
-	private void paintBlock(Graphics g, Point tlg, Point brg) {
-		Point tl = toGUICoord(tlg);
-		Point br = toGUICoord(brg);
-		g.fillRect(tl.getX(),tl.getY(),br.getX()-tl.getX(),br.getY()-tl.getY());
-	}
-
-	private void paintBlocks(Graphics g) {
-		for (BlockState block : breakoutState.getBlocks()) {
-			g.setColor(block.getColor());			
-			Rect loc = block.getLocation();
-			Point tl = loc.getTopLeft();
-			Point br = loc.getBottomRight();
-			paintBlock(g, tl, br);
-		}
-	}
-	
-	private void paintReplSources(Graphics g) {
-		g.setColor(Color.blue);
-		for (Point rsource : Constants.REPL_SOURCE()) {
-			Circle c = new Circle( rsource, 1500);
-			Point tl = c.getTopLeftPoint();
-			Point br = c.getBottomRightPoint();
-			Point guiTl = toGUICoord(tl);
-			Point guiBr = toGUICoord(br);
-			//Point guiSource = toGUICoord( rsource );
-		    g.drawOval(guiTl.getX(), guiTl.getY(), guiBr.getX()- guiTl.getX(), (guiBr.getY()-guiTl.getY() ) / 2);
-		}
+		paintStats.record(start, System.nanoTime());
 	}
 
 }
@@ -0,0 +1,467 @@
+package breakout;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * An append-only record of every input of one game: each tick(paddleDir, elapsedTime) and each
+ * movePaddleLeft/movePaddleRight call, together with the map description and seed the game started from.
+ * ReplayEngine reconstructs the exact game from it.
+ *
+ * Inputs are coded as events. A paddle move immediately followed by a tick in the same direction, with the same
+ * elapsed time, is the way GameView and SimulationLoop step a game, and is coded as a single step event.
+ * Equal consecutive events are run-length coded. A run is one header byte (event kind, and flags telling whether
+ * the elapsed time differs from the previous run's and whether the run is longer than one event), then the elapsed
+ * time delta as a zigzag varint if it differs, then the run length as a varint if it exceeds one.
+ * A run of a thousand idle 20 ms ticks takes three bytes.
+ *
+ * A journal can also embed keyframes: every `keyframeInterval` ticks, the complete game (see StateCodec) is written
+ * between the runs, as a keyframe header byte, a varint length and the encoded state. A replay can then seek to any
+ * tick by decoding the last keyframe before it and replaying at most one interval of inputs.
+ *
+ * The binary form is: the magic number "BKJ1", a version byte, the seed (8 bytes, big-endian), the description
+ * (varint length and UTF-8 bytes), then the runs and keyframes up to the end of the data.
+ */
+public final class InputJournal {
+
+	static final int MAGIC = 0x424B4A31;
+	/**
+	 * Version 2 added keyframes; version 1 journals are read as journals without keyframes.
+	 */
+	static final int VERSION = 2;
+
+	/** tick(-1, e), tick(0, e) and tick(1, e). */
+	static final int TICK_LEFT = 0;
+	static final int TICK_NONE = 1;
+	static final int TICK_RIGHT = 2;
+	/** movePaddleLeft(e) and movePaddleRight(e) on their own. */
+	static final int MOVE_LEFT = 3;
+	static final int MOVE_RIGHT = 4;
+	/** movePaddleLeft(e) followed by tick(-1, e), and movePaddleRight(e) followed by tick(1, e). */
+	static final int STEP_LEFT = 5;
+	static final int STEP_RIGHT = 6;
+	/** An encoded state, not an input. */
+	static final int KEYFRAME = 7;
+
+	private static final int KIND_MASK = 0x07;
+	private static final int ELAPSED_CHANGED = 0x08;
+	private static final int SINGLE = 0x10;
+	private static final int NONE = -1;
+
+	/**
+	 * The elapsed time runs are coded relative to at the start of the data, so the usual step costs nothing.
+	 */
+	private static final int INITIAL_ELAPSED = Constants.BALL_DELAYMS;
+
+	/**
+	 * Where a keyframe is in the coded runs, and from where to replay after it.
+	 *
+	 * @immutable
+	 */
+	static final class Keyframe {
+		/** The number of ticks the game had run when the keyframe was taken. */
+		final long tick;
+		/** The encoded state, at runs[stateOffset .. stateOffset + stateLength - 1]. */
+		final int stateOffset;
+		final int stateLength;
+		/** The offset of the first run after the keyframe, and the elapsed time that run is coded relative to. */
+		final int resumeOffset;
+		final int resumeElapsed;
+
+		Keyframe(long tick, int stateOffset, int stateLength, int resumeOffset, int resumeElapsed) {
+			this.tick = tick;
+			this.stateOffset = stateOffset;
+			this.stateLength = stateLength;
+			this.resumeOffset = resumeOffset;
+			this.resumeElapsed = resumeElapsed;
+		}
+	}
+
+	private final String description;
+	private final long seed;
+	private final int keyframeInterval;
+
+	/**
+	 * The runs and keyframes coded so far.
+	 *
+	 * @representationObject
+	 */
+	private final ByteSink runs = new ByteSink();
+	private int codedElapsed = INITIAL_ELAPSED;
+	private long tickCount;
+	/**
+	 * keyframes[0 .. keyframeCount - 1], by increasing tick.
+	 *
+	 * @representationObject
+	 */
+	private Keyframe[] keyframes = new Keyframe[4];
+	private int keyframeCount;
+
+	// the run being extended.
+	private int runKind = NONE;
+	private int runElapsed;
+	private long runCount;
+
+	// a paddle move that may still merge with the next tick.
+	private int pendingMove = NONE;
+	private int pendingMoveElapsed;
+
+	/**
+	 * An empty journal without keyframes for a game created by GameMap.createStateFromDescription(description, seed).
+	 *
+	 * @throws IllegalArgumentException | description == null
+	 * @post | getDescription() == description
+	 * @post | getSeed() == seed
+	 * @post | getKeyframeInterval() == 0
+	 * @post | getTickCount() == 0
+	 */
+	public InputJournal(String description, long seed) {
+		this(description, seed, 0);
+	}
+
+	/**
+	 * An empty journal for a game created by GameMap.createStateFromDescription(description, seed), that embeds
+	 * a keyframe every `keyframeInterval` ticks, or none if keyframeInterval is 0.
+	 *
+	 * @throws IllegalArgumentException | description == null
+	 * @throws IllegalArgumentException | keyframeInterval < 0
+	 * @post | getDescription() == description
+	 * @post | getSeed() == seed
+	 * @post | getKeyframeInterval() == keyframeInterval
+	 * @post | getTickCount() == 0
+	 */
+	public InputJournal(String description, long seed, int keyframeInterval) {
+		if (description == null)
+			throw new IllegalArgumentException();
+		if (keyframeInterval < 0)
+			throw new IllegalArgumentException();
+		this.description = description;
+		this.seed = seed;
+		this.keyframeInterval = keyframeInterval;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public int getKeyframeInterval() {
+		return keyframeInterval;
+	}
+
+	/**
+	 * The number of ticks recorded so far.
+	 */
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	/**
+	 * The number of keyframes embedded so far.
+	 */
+	public int getKeyframeCount() {
+		return keyframeCount;
+	}
+
+	/**
+	 * Create the game this journal describes, with this journal recording its inputs.
+	 * Games that are recorded must be advanced with tick and tickDuring only (fastForward is refused).
+	 *
+	 * @throws IllegalStateException | getTickCount() != 0
+	 * @post | result != null
+	 */
+	public BreakoutState newGame() {
+		if (tickCount != 0 || runKind != NONE || runs.length() > 0 || pendingMove != NONE)
+			throw new IllegalStateException();
+		BreakoutState res = GameMap.createStateFromDescription(description, seed);
+		res.setJournal(this);
+		return res;
+	}
+
+	/**
+	 * Record a tick of `state`, which has just been applied to it.
+	 */
+	void recordTick(int paddleDir, int elapsedTime, BreakoutState state) {
+		tickCount++;
+		if (pendingMove == MOVE_LEFT && paddleDir == -1 && pendingMoveElapsed == elapsedTime) {
+			pendingMove = NONE;
+			append(STEP_LEFT, elapsedTime);
+		} else if (pendingMove == MOVE_RIGHT && paddleDir == 1 && pendingMoveElapsed == elapsedTime) {
+			pendingMove = NONE;
+			append(STEP_RIGHT, elapsedTime);
+		} else {
+			flushPendingMove();
+			append(TICK_NONE + paddleDir, elapsedTime);
+		}
+		if (keyframeInterval > 0 && tickCount % keyframeInterval == 0) {
+			appendKeyframe(StateCodec.encode(state));
+		}
+	}
+
+	void recordMoveLeft(int elapsedTime) {
+		flushPendingMove();
+		pendingMove = MOVE_LEFT;
+		pendingMoveElapsed = elapsedTime;
+	}
+
+	void recordMoveRight(int elapsedTime) {
+		flushPendingMove();
+		pendingMove = MOVE_RIGHT;
+		pendingMoveElapsed = elapsedTime;
+	}
+
+	private void flushPendingMove() {
+		if (pendingMove != NONE) {
+			append(pendingMove, pendingMoveElapsed);
+			pendingMove = NONE;
+		}
+	}
+
+	private void append(int kind, int elapsedTime) {
+		if (kind == runKind && elapsedTime == runElapsed) {
+			runCount++;
+			return;
+		}
+		flushRun();
+		runKind = kind;
+		runElapsed = elapsedTime;
+		runCount = 1;
+	}
+
+	private void flushRun() {
+		if (runKind != NONE) {
+			codedElapsed = writeRun(runs, runKind, runElapsed, runCount, codedElapsed);
+			runKind = NONE;
+		}
+	}
+
+	// a keyframe is only taken right after a tick, so no paddle move is pending.
+	private void appendKeyframe(byte[] state) {
+		flushRun();
+		runs.writeByte(KEYFRAME);
+		runs.writeVarLong(state.length);
+		int stateOffset = runs.length();
+		runs.write(state, 0, state.length);
+		addKeyframe(new Keyframe(tickCount, stateOffset, state.length, runs.length(), codedElapsed));
+	}
+
+	private void addKeyframe(Keyframe keyframe) {
+		if (keyframeCount == keyframes.length) {
+			keyframes = Arrays.copyOf(keyframes, 2 * keyframes.length);
+		}
+		keyframes[keyframeCount++] = keyframe;
+	}
+
+	// returns the elapsed time the next run is coded relative to.
+	private static int writeRun(ByteSink out, int kind, int elapsedTime, long count, int prevElapsed) {
+		int header = kind;
+		if (elapsedTime != prevElapsed) { header |= ELAPSED_CHANGED; }
+		if (count == 1) { header |= SINGLE; }
+		out.writeByte(header);
+		if (elapsedTime != prevElapsed) { out.writeSignedVarLong(elapsedTime - prevElapsed); }
+		if (count != 1) { out.writeVarLong(count); }
+		return elapsedTime;
+	}
+
+	/**
+	 * All runs and keyframes recorded so far, including the run still being extended, without changing this journal.
+	 * Offsets in the keyframes refer to this data.
+	 *
+	 * @creates | result
+	 */
+	byte[] encodedRuns() {
+		ByteSink res = new ByteSink();
+		res.write(runs);
+		int prev = codedElapsed;
+		if (runKind != NONE) {
+			prev = writeRun(res, runKind, runElapsed, runCount, prev);
+		}
+		if (pendingMove != NONE) {
+			writeRun(res, pendingMove, pendingMoveElapsed, 1, prev);
+		}
+		return res.toByteArray();
+	}
+
+	/**
+	 * The keyframes embedded so far, by increasing tick.
+	 *
+	 * @creates | result
+	 */
+	Keyframe[] keyframes() {
+		return Arrays.copyOf(keyframes, keyframeCount);
+	}
+
+	/**
+	 * The binary form of this journal, see the class comment.
+	 *
+	 * @creates | result
+	 */
+	public byte[] toByteArray() {
+		ByteSink res = new ByteSink();
+		res.writeInt(MAGIC);
+		res.writeByte(VERSION);
+		res.writeLong(seed);
+		byte[] text = description.getBytes(StandardCharsets.UTF_8);
+		res.writeVarLong(text.length);
+		res.write(text, 0, text.length);
+		byte[] body = encodedRuns();
+		res.write(body, 0, body.length);
+		return res.toByteArray();
+	}
+
+	/**
+	 * @throws IllegalArgumentException | out == null
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		if (out == null)
+			throw new IllegalArgumentException();
+		out.write(toByteArray());
+	}
+
+	/**
+	 * Read a journal in the binary form of toByteArray. Further inputs can be recorded in the result;
+	 * it takes no further keyframes.
+	 *
+	 * @throws IllegalArgumentException | bytes == null
+	 * @throws IllegalArgumentException if the bytes are not a valid journal
+	 * @post | result != null
+	 */
+	public static InputJournal fromBytes(byte[] bytes) {
+		if (bytes == null)
+			throw new IllegalArgumentException();
+		ByteCursor in = new ByteCursor(bytes, 0);
+		if (in.readInt() != MAGIC)
+			throw new IllegalArgumentException("not an input journal");
+		int version = in.readByte();
+		if (version < 1 || version > VERSION)
+			throw new IllegalArgumentException("unsupported journal version");
+		long seed = in.readLong();
+		int textLength = in.readVarInt(Integer.MAX_VALUE);
+		int textStart = in.position();
+		in.skip(textLength);
+		String description = new String(bytes, textStart, textLength, StandardCharsets.UTF_8);
+
+		InputJournal res = new InputJournal(description, seed);
+		int start = in.position();
+		RunReader reader = new RunReader(bytes, start, INITIAL_ELAPSED);
+		while (reader.next()) {
+			if (reader.kind() == KEYFRAME) {
+				res.addKeyframe(new Keyframe(res.tickCount, reader.stateOffset() - start, reader.stateLength(),
+						reader.position() - start, reader.elapsed()));
+			} else if (reader.kind() != MOVE_LEFT && reader.kind() != MOVE_RIGHT) {
+				res.tickCount += reader.count();
+			}
+		}
+		res.runs.write(bytes, start, bytes.length - start);
+		res.codedElapsed = reader.elapsed();
+		return res;
+	}
+
+	/**
+	 * @throws IllegalArgumentException | in == null
+	 * @throws IllegalArgumentException if the data is not a valid journal
+	 */
+	public static InputJournal readFrom(InputStream in) throws IOException {
+		if (in == null)
+			throw new IllegalArgumentException();
+		return fromBytes(in.readAllBytes());
+	}
+
+	/**
+	 * Decodes runs and keyframes, see the class comment.
+	 */
+	static final class RunReader {
+		private final ByteCursor in;
+		private int kind;
+		private int elapsed;
+		private long count;
+		private int stateOffset;
+		private int stateLength;
+
+		/**
+		 * A reader of the runs starting at bytes[offset], where the first run is coded relative to `elapsed`.
+		 */
+		RunReader(byte[] bytes, int offset, int elapsed) {
+			this.in = new ByteCursor(bytes, offset);
+			this.elapsed = elapsed;
+		}
+
+		/**
+		 * A reader of all runs in `bytes`.
+		 */
+		RunReader(byte[] bytes) {
+			this(bytes, 0, INITIAL_ELAPSED);
+		}
+
+		/**
+		 * Decode the next run or keyframe. Returns false at the end of the data.
+		 *
+		 * @throws IllegalArgumentException if the data is corrupt
+		 */
+		boolean next() {
+			if (!in.hasMore()) {
+				return false;
+			}
+			int header = in.readByte();
+			kind = header & KIND_MASK;
+			if ((header & ~(KIND_MASK | ELAPSED_CHANGED | SINGLE)) != 0)
+				throw new IllegalArgumentException("corrupt journal");
+			if (kind == KEYFRAME) {
+				if (header != KEYFRAME)
+					throw new IllegalArgumentException("corrupt journal");
+				count = 0;
+				stateLength = in.readVarInt(Integer.MAX_VALUE);
+				stateOffset = in.position();
+				in.skip(stateLength);
+				return true;
+			}
+			if ((header & ELAPSED_CHANGED) != 0) {
+				elapsed += in.readSignedVarInt();
+			}
+			count = (header & SINGLE) != 0 ? 1 : in.readVarLong();
+			if (elapsed < 0 || count < 1)
+				throw new IllegalArgumentException("corrupt journal");
+			return true;
+		}
+
+		int kind() {
+			return kind;
+		}
+
+		int elapsed() {
+			return elapsed;
+		}
+
+		/**
+		 * The number of events in the run; 0 for a keyframe.
+		 */
+		long count() {
+			return count;
+		}
+
+		/**
+		 * Where the state of the keyframe just read starts.
+		 */
+		int stateOffset() {
+			return stateOffset;
+		}
+
+		int stateLength() {
+			return stateLength;
+		}
+
+		/**
+		 * Where the next run or keyframe starts.
+		 */
+		int position() {
+			return in.position();
+		}
+	}
+
+}
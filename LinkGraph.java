@@ -0,0 +1,294 @@
+package breakout;
+
+import java.util.Arrays;
+
+/**
+ * The bidirectional links between the balls and the alphas of a BreakoutState, by dense index.
+ *
+ * Balls and alphas are identified by their index in the state's ball table and alpha array.
+ * Each side keeps adjacency lists, so linking, unlinking and enumerating the peers of one
+ * ball or alpha cost O(degree), and enumerating all links costs O(number of links).
+ *
+ * @invar | getLinkCount() >= 0
+ */
+class LinkGraph {
+
+	private static final int[] NO_PEERS = {};
+
+	/**
+	 * ballPeers[b][0 .. ballDegree[b] - 1] are the alphas linked to ball b.
+	 *
+	 * @representationObject
+	 */
+	private int[][] ballPeers;
+	private int[] ballDegree;
+	/**
+	 * alphaPeers[a][0 .. alphaDegree[a] - 1] are the balls linked to alpha a.
+	 *
+	 * @representationObject
+	 */
+	private int[][] alphaPeers;
+	private int[] alphaDegree;
+	private int linkCount;
+	/**
+	 * The sum of StateHash.link over the links, kept up to date by every change.
+	 */
+	private long hash;
+	/**
+	 * Changes whenever a link is made or broken.
+	 */
+	private int version;
+
+	/**
+	 * @post | getLinkCount() == 0
+	 */
+	LinkGraph() {
+		ballPeers = new int[4][];
+		ballDegree = new int[4];
+		alphaPeers = new int[4][];
+		alphaDegree = new int[4];
+		Arrays.fill(ballPeers, NO_PEERS);
+		Arrays.fill(alphaPeers, NO_PEERS);
+	}
+
+	/**
+	 * A graph with the same links as this one, sharing nothing with it.
+	 *
+	 * @creates | result
+	 * @post | result.getLinkCount() == getLinkCount()
+	 */
+	LinkGraph copy() {
+		LinkGraph res = new LinkGraph();
+		res.ballPeers = copyRows(ballPeers, ballDegree);
+		res.ballDegree = ballDegree.clone();
+		res.alphaPeers = copyRows(alphaPeers, alphaDegree);
+		res.alphaDegree = alphaDegree.clone();
+		res.linkCount = linkCount;
+		res.hash = hash;
+		res.version = version;
+		return res;
+	}
+
+	private static int[][] copyRows(int[][] peers, int[] degree) {
+		int[][] res = new int[peers.length][];
+		for (int row = 0; row < peers.length; ++row) {
+			res[row] = degree[row] == 0 ? NO_PEERS : Arrays.copyOf(peers[row], degree[row]);
+		}
+		return res;
+	}
+
+	int getLinkCount() {
+		return linkCount;
+	}
+
+	/**
+	 * A hash of the links, by ball and alpha index, maintained in O(1) per link changed.
+	 */
+	long getHash() {
+		return hash;
+	}
+
+	/**
+	 * A number that changes whenever a link is made or broken.
+	 */
+	int getVersion() {
+		return version;
+	}
+
+	int ballDegree(int b) {
+		return b < ballDegree.length ? ballDegree[b] : 0;
+	}
+
+	/**
+	 * The k-th alpha linked to ball b.
+	 *
+	 * @pre | 0 <= k && k < ballDegree(b)
+	 */
+	int ballPeer(int b, int k) {
+		return ballPeers[b][k];
+	}
+
+	int alphaDegree(int a) {
+		return a < alphaDegree.length ? alphaDegree[a] : 0;
+	}
+
+	/**
+	 * The k-th ball linked to alpha a.
+	 *
+	 * @pre | 0 <= k && k < alphaDegree(a)
+	 */
+	int alphaPeer(int a, int k) {
+		return alphaPeers[a][k];
+	}
+
+	boolean isLinked(int b, int a) {
+		return indexOf(ballPeers, ballDegree, b, a) >= 0;
+	}
+
+	/**
+	 * Link ball b with alpha a. Does nothing if they are already linked.
+	 *
+	 * @pre | b >= 0 && a >= 0
+	 * @mutates | this
+	 */
+	void link(int b, int a) {
+		ensureBall(b);
+		ensureAlpha(a);
+		if (isLinked(b, a)) {
+			return;
+		}
+		append(ballPeers, ballDegree, b, a);
+		append(alphaPeers, alphaDegree, a, b);
+		linkCount++;
+		hash += StateHash.link(b, a);
+		version++;
+	}
+
+	/**
+	 * Unlink ball b and alpha a. Does nothing if they are not linked.
+	 *
+	 * @mutates | this
+	 */
+	void unlink(int b, int a) {
+		if (b >= ballDegree.length || a >= alphaDegree.length) {
+			return;
+		}
+		if (remove(ballPeers, ballDegree, b, a)) {
+			remove(alphaPeers, alphaDegree, a, b);
+			linkCount--;
+			hash -= StateHash.link(b, a);
+			version++;
+		}
+	}
+
+	/**
+	 * Remove all links of ball b.
+	 *
+	 * @mutates | this
+	 * @post | ballDegree(b) == 0
+	 */
+	void clearBall(int b) {
+		while (ballDegree(b) > 0) {
+			unlink(b, ballPeers[b][ballDegree[b] - 1]);
+		}
+	}
+
+	/**
+	 * Remove all links of alpha a.
+	 *
+	 * @mutates | this
+	 * @post | alphaDegree(a) == 0
+	 */
+	void clearAlpha(int a) {
+		while (alphaDegree(a) > 0) {
+			unlink(alphaPeers[a][alphaDegree[a] - 1], a);
+		}
+	}
+
+	/**
+	 * Renumber ball `from` as ball `to`, e.g. when the ball table is compacted.
+	 *
+	 * @pre | ballDegree(to) == 0
+	 * @mutates | this
+	 */
+	void moveBall(int from, int to) {
+		if (from == to || ballDegree(from) == 0) {
+			return;
+		}
+		ensureBall(to);
+		for (int k = 0; k < ballDegree[from]; ++k) {
+			int a = ballPeers[from][k];
+			replace(alphaPeers, alphaDegree, a, from, to);
+			hash += StateHash.link(to, a) - StateHash.link(from, a);
+		}
+		swapSlots(ballPeers, ballDegree, from, to);
+	}
+
+	/**
+	 * Renumber alpha `from` as alpha `to`, e.g. when the alpha array is compacted.
+	 *
+	 * @pre | alphaDegree(to) == 0
+	 * @mutates | this
+	 */
+	void moveAlpha(int from, int to) {
+		if (from == to || alphaDegree(from) == 0) {
+			return;
+		}
+		ensureAlpha(to);
+		for (int k = 0; k < alphaDegree[from]; ++k) {
+			int b = alphaPeers[from][k];
+			replace(ballPeers, ballDegree, b, from, to);
+			hash += StateHash.link(b, to) - StateHash.link(b, from);
+		}
+		swapSlots(alphaPeers, alphaDegree, from, to);
+	}
+
+	// the (empty) target row takes over the source row, so neither is reallocated.
+	private static void swapSlots(int[][] peers, int[] degree, int from, int to) {
+		int[] row = peers[to];
+		peers[to] = peers[from];
+		peers[from] = row;
+		degree[to] = degree[from];
+		degree[from] = 0;
+	}
+
+	private void ensureBall(int b) {
+		if (b >= ballDegree.length) {
+			int capacity = Math.max(b + 1, 2 * ballDegree.length);
+			ballPeers = grow(ballPeers, capacity);
+			ballDegree = Arrays.copyOf(ballDegree, capacity);
+		}
+	}
+
+	private void ensureAlpha(int a) {
+		if (a >= alphaDegree.length) {
+			int capacity = Math.max(a + 1, 2 * alphaDegree.length);
+			alphaPeers = grow(alphaPeers, capacity);
+			alphaDegree = Arrays.copyOf(alphaDegree, capacity);
+		}
+	}
+
+	private static int[][] grow(int[][] peers, int capacity) {
+		int[][] res = Arrays.copyOf(peers, capacity);
+		Arrays.fill(res, peers.length, capacity, NO_PEERS);
+		return res;
+	}
+
+	private static int indexOf(int[][] peers, int[] degree, int row, int value) {
+		if (row >= degree.length) {
+			return -1;
+		}
+		int[] r = peers[row];
+		for (int k = 0; k < degree[row]; ++k) {
+			if (r[k] == value) {
+				return k;
+			}
+		}
+		return -1;
+	}
+
+	private static void append(int[][] peers, int[] degree, int row, int value) {
+		int[] r = peers[row];
+		if (degree[row] == r.length) {
+			r = Arrays.copyOf(r, Math.max(2, 2 * r.length));
+			peers[row] = r;
+		}
+		r[degree[row]++] = value;
+	}
+
+	// order within a row carries no meaning, so removal swaps in the last entry.
+	private static boolean remove(int[][] peers, int[] degree, int row, int value) {
+		int k = indexOf(peers, degree, row, value);
+		if (k < 0) {
+			return false;
+		}
+		peers[row][k] = peers[row][--degree[row]];
+		return true;
+	}
+
+	private static void replace(int[][] peers, int[] degree, int row, int value, int by) {
+		int k = indexOf(peers, degree, row, value);
+		peers[row][k] = by;
+	}
+
+}
@@ -17,7 +17,7 @@ public class NormalPaddleState extends PaddleState {
 	}
 
 	@Override
-	public PaddleState stateAfterHit() {
+	public PaddleState stateAfterHit(GameRandom random) {
 		return this;
 	}
 	
@@ -6,7 +6,7 @@ import breakout.utils.Vector;
 
 import java.awt.Color;
 import java.util.Arrays;
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Represents the state of a paddle in the breakout game.
@@ -111,11 +111,25 @@ public abstract class PaddleState {
 
 	/**
 	 * Return the new state of the paddle after it is hit by a ball.
+	 * Any random choice is drawn from `random`, so the result only depends on this paddle and the state of `random`.
 	 * 
+	 * @pre | random != null
+	 * @mutates | random
 	 * @post | result != null
 	 * @post | result.getLocation().equals(getLocation())
 	 */
-	public abstract PaddleState stateAfterHit();
+	public abstract PaddleState stateAfterHit(GameRandom random);
+
+	/**
+	 * Return the new state of the paddle after it is hit by a ball.
+	 * Not reproducible: any random choice is drawn from ThreadLocalRandom. Games use stateAfterHit(GameRandom).
+	 * 
+	 * @post | result != null
+	 * @post | result.getLocation().equals(getLocation())
+	 */
+	public PaddleState stateAfterHit() {
+		return stateAfterHit(new GameRandom(ThreadLocalRandom.current().nextLong()));
+	}
 
 	/**
 	 * @mutates | this
@@ -140,11 +154,23 @@ public abstract class PaddleState {
 	/**
 	 * Randomly picks a color in getPossibleColors() and makes it the current color (retrieved with getCurColor()).
 	 * The resulting getCurColor() should still be in getPossibleColors() (see public invar) 
+	 * 
+	 * Not reproducible: the pick is drawn from ThreadLocalRandom. Games toss with tossCurColor(GameRandom) instead.
+	 * 
+	 * @mutates | this
 	 */
 	public void tossCurColor() {
-		Random rand = new Random();
-		int randInt = rand.nextInt( possibleColors.length );
-		curColor = possibleColors[randInt];
+		curColor = possibleColors[ThreadLocalRandom.current().nextInt( possibleColors.length )];
+	}
+
+	/**
+	 * Picks a color in getPossibleColors(), drawn from `random`, and makes it the current color.
+	 * 
+	 * @pre | random != null
+	 * @mutates | this, random
+	 */
+	public void tossCurColor(GameRandom random) {
+		curColor = possibleColors[random.nextInt( possibleColors.length )];
 	}
 	
 	/**
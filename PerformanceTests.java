@@ -0,0 +1,1228 @@
+package breakout;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import breakout.radioactivity.Alpha;
+import breakout.radioactivity.Ball;
+import breakout.radioactivity.SuperChargedBall;
+import breakout.utils.*;
+
+/**
+ * Tests for the internal data structures that back BreakoutState's hot paths.
+ * Those structures must never change the observable behavior of a game.
+ */
+class PerformanceTests {
+
+	private Point BR;
+
+	@BeforeEach
+	void setUp() {
+		BR = new Point(Constants.WIDTH, Constants.HEIGHT);
+	}
+	
+	/**
+	 * The number of bytes the current thread has allocated so far.
+	 */
+	static long allocatedBytes() {
+		com.sun.management.ThreadMXBean bean =
+				(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+		return bean.getCurrentThreadAllocatedBytes();
+	}
+
+	/**
+	 * Two separately created games are in the same state: blocks are compared by content, not identity.
+	 */
+	static void assertSameGame(BreakoutState expected, BreakoutState actual) {
+		assertTrue(BreakoutState.sameBallArray(expected.getBalls(), actual.getBalls()));
+		BlockState[] expectedBlocks = expected.getBlocks();
+		BlockState[] actualBlocks = actual.getBlocks();
+		assertEquals(expectedBlocks.length, actualBlocks.length);
+		for (int i = 0; i < expectedBlocks.length; ++i) {
+			assertEquals(expectedBlocks[i].getClass(), actualBlocks[i].getClass());
+			assertEquals(expectedBlocks[i].getLocation(), actualBlocks[i].getLocation());
+			assertEquals(expectedBlocks[i].getColor(), actualBlocks[i].getColor());
+		}
+		assertTrue(expected.getPaddle().equalContent(actual.getPaddle()));
+	}
+
+	@Nested
+	class BlockGridTests {
+
+		private BlockGrid grid;
+
+		@BeforeEach
+		void setUp() {
+			grid = new BlockGrid(BR, Constants.BLOCK_WIDTH, Constants.BLOCK_HEIGHT);
+		}
+
+		@Test
+		void queryFindsOverlappingCellsOnly() {
+			Rect topLeft = new Rect(Constants.ORIGIN, new Point(Constants.BLOCK_WIDTH - 1, Constants.BLOCK_HEIGHT - 1));
+			Point br = new Point(Constants.WIDTH - 1, Constants.HEIGHT - 1);
+			Rect bottomRight = new Rect(br.plus(new Vector(- Constants.BLOCK_WIDTH / 2, - Constants.BLOCK_HEIGHT / 2)), br);
+			grid.insert(0, topLeft);
+			grid.insert(1, bottomRight);
+
+			assertEquals(1, grid.query(new Circle(new Point(100, 100), Constants.INIT_BALL_DIAMETER)));
+			assertEquals(0, grid.getCandidate(0));
+			assertEquals(1, grid.query(new Circle(br, Constants.INIT_BALL_DIAMETER)));
+			assertEquals(1, grid.getCandidate(0));
+		}
+
+		@Test
+		/**
+		 * a rect spanning several cells is reported once, and ids come out sorted.
+		 */
+		void spanningRectsAreDeduplicatedAndSorted() {
+			Rect wide = new Rect(Constants.ORIGIN, new Point(3 * Constants.BLOCK_WIDTH, Constants.BLOCK_HEIGHT / 2));
+			Rect small = new Rect(new Point(10, 10), new Point(20, 20));
+			grid.insert(5, wide);
+			grid.insert(2, small);
+
+			assertEquals(2, grid.query(0, 0, Constants.WIDTH, Constants.HEIGHT));
+			assertEquals(2, grid.getCandidate(0));
+			assertEquals(5, grid.getCandidate(1));
+
+			grid.remove(5, wide);
+			assertEquals(1, grid.query(0, 0, Constants.WIDTH, Constants.HEIGHT));
+			assertEquals(2, grid.getCandidate(0));
+		}
+
+		@Test
+		/**
+		 * queries that find many registrations dedup them with marks: same result, also on the next query.
+		 */
+		void largeQueriesAreDeduplicatedAndSorted() {
+			int n = 100;
+			for (int id = n - 1; id >= 0; --id) { //every rect spans two columns
+				int left = id % (Constants.BLOCK_COLUMNS - 1) * Constants.BLOCK_WIDTH + Constants.BLOCK_WIDTH / 2;
+				int top = id / (Constants.BLOCK_COLUMNS - 1) % Constants.BLOCK_LINES * Constants.BLOCK_HEIGHT;
+				grid.insert(id, left, top, left + Constants.BLOCK_WIDTH, top + 10);
+			}
+			for (int query = 0; query < 2; ++query) {
+				assertEquals(n, grid.query(0, 0, Constants.WIDTH, Constants.HEIGHT));
+				for (int k = 0; k < n; ++k) {
+					assertEquals(k, grid.getCandidate(k));
+				}
+			}
+		}
+
+		@Test
+		void typicalGameStillHitsBlocks() {
+			BreakoutState bstate = new BreakoutState(
+					new Ball[] { Setups.typicalNormalBall(0) },
+					Setups.typicalBlocks(),
+					BR,
+					Setups.typicalPaddle());
+			bstate.tickDuring(1000);
+			assertEquals(3, bstate.getBlocks().length); //the normal block got destroyed
+		}
+	}
+
+	@Nested
+	class BlockStoreTests {
+
+		private BlockState[] row(int n) {
+			BlockState[] res = new BlockState[n];
+			for (int i = 0 ; i < n ; i++) {
+				Point tl = new Point(i * 100, 0);
+				res[i] = new NormalBlockState(new Rect(tl, tl.plus(new Vector(90, 90))));
+			}
+			return res;
+		}
+
+		@Test
+		void removeAndReplaceKeepOrder() {
+			BlockState[] blocks = row(3);
+			BlockStore store = new BlockStore(blocks, BR);
+			SturdyBlockState sturdy = new SturdyBlockState(blocks[2].getLocation(), 2);
+			store.remove(1);
+			store.replace(2, sturdy);
+
+			assertEquals(2, store.getLiveCount());
+			assertArrayEquals(new BlockState[] { blocks[0], sturdy }, store.snapshot());
+		}
+
+		@Test
+		void forksDoNotSeeEachOthersChanges() {
+			BlockState[] blocks = row(3);
+			BlockStore store = new BlockStore(blocks, BR);
+			BlockStore fork = store.fork();
+			fork.remove(0);
+			SturdyBlockState sturdy = new SturdyBlockState(blocks[2].getLocation(), 2);
+			store.replace(2, sturdy);
+
+			assertArrayEquals(new BlockState[] { blocks[0], blocks[1], sturdy }, store.snapshot());
+			assertArrayEquals(new BlockState[] { blocks[1], blocks[2] }, fork.snapshot());
+			assertEquals(1, store.query(new Circle(new Point(45, 45), 10)));
+			assertEquals(0, fork.query(new Circle(new Point(45, 45), 10)));
+		}
+
+		@Test
+		/**
+		 * once tombstones outnumber live blocks the slots get compacted, order is kept.
+		 */
+		void compactionKeepsLiveBlocksInOrder() {
+			BlockState[] blocks = row(100);
+			BlockStore store = new BlockStore(blocks, BR);
+			for (int i = 0 ; i < 60 ; i++) {
+				int slot = 0;
+				while (store.get(slot) == null) { slot++; }
+				store.remove(slot);
+			}
+			assertTrue(store.getSlotCount() < 100);
+			assertEquals(40, store.getLiveCount());
+			assertSame(blocks[60], store.snapshot()[0]);
+			assertSame(blocks[99], store.snapshot()[39]);
+			assertEquals(1, store.query(new Circle(new Point(6045, 45), 10)));
+			assertSame(blocks[60], store.get(store.getCandidate(0)));
+		}
+
+		@Test
+		/**
+		 * a store built from columns materializes each block once, as the block the columns describe.
+		 */
+		void packedBlocksMaterializeLazily() {
+			BlockState[] blocks = row(3);
+			blocks[1] = new SturdyBlockState(blocks[1].getLocation(), 3);
+			BlockStore objects = new BlockStore(blocks, BR);
+			BlockStore packed = new BlockStore(BR, new byte[] { BlockStore.NORMAL, BlockStore.STURDY, BlockStore.NORMAL },
+					new int[] { 0, 100, 200 }, new int[] { 0, 0, 0 }, new int[] { 90, 190, 290 }, new int[] { 90, 90, 90 },
+					new byte[] { 0, 3, 0 });
+			assertEquals(objects.getHash(), packed.getHash());
+			assertEquals(BlockStore.STURDY, packed.getType(1));
+			assertEquals(3, packed.getLives(1));
+			assertEquals(190, packed.getRight(1));
+
+			BlockState sturdy = packed.get(1);
+			assertSame(sturdy, packed.get(1));
+			assertEquals(blocks[1].getLocation(), sturdy.getLocation());
+			assertEquals(3, ((SturdyBlockState) sturdy).getLivesLeft());
+			packed.replace(1, sturdy.blockStateAfterHit(0));
+			assertEquals(2, packed.getLives(1));
+			packed.remove(0);
+			objects.replace(1, objects.get(1).blockStateAfterHit(0));
+			objects.remove(0);
+			assertEquals(objects.getHash(), packed.getHash());
+			assertEquals(NormalBlockState.class, packed.snapshot()[1].getClass());
+		}
+
+		@Test
+		/**
+		 * forks may run on other threads: a block materialized by a fork must not land in its source's slots.
+		 */
+		void forkMaterializesIntoItsOwnSlots() {
+			BlockStore source = new BlockStore(BR, new byte[] { BlockStore.NORMAL, BlockStore.NORMAL },
+					new int[] { 0, 100 }, new int[] { 0, 0 }, new int[] { 90, 190 }, new int[] { 90, 90 },
+					new byte[] { 0, 0 });
+			BlockStore fork = source.fork();
+			BlockState forked = fork.get(0);
+			assertSame(forked, fork.get(0));
+			assertNotSame(forked, source.get(0));
+			assertEquals(forked.getLocation(), source.get(0).getLocation());
+		}
+
+		@Test
+		void unpackableBlocksAreKeptAsObjects() {
+			BlockState[] blocks = row(2);
+			blocks[0] = new SturdyBlockState(blocks[0].getLocation(), 1000);
+			BlockStore store = new BlockStore(blocks, BR);
+			assertEquals(BlockStore.OTHER, store.getType(0));
+			assertSame(blocks[0], store.get(0));
+			assertEquals(BlockStore.NORMAL, store.getType(1));
+			assertTrue(store.overlaps(1, 150, 50, 160, 60));
+			assertFalse(store.overlaps(1, 0, 0, 90, 90));
+		}
+	}
+
+	/**
+	 * The allocation counter only reads low once the JIT has compiled the tick (escape analysis), so these tests
+	 * only run when asked for: "mvn -P allocation test" sets breakout.allocationTests.
+	 */
+	@Nested
+	@EnabledIfSystemProperty(named = "breakout.allocationTests", matches = "true")
+	class TickAllocationTests {
+
+		/**
+		 * Per ball, the moving ball itself still produces its new (immutable) location.
+		 * Everything BreakoutState adds on top of that must fit in this budget.
+		 */
+		private static final long BYTES_PER_TICK_BUDGET = 256;
+		private static final int TICKS = 20000;
+
+		@Test
+		void steadyStateTickStaysWithinAllocationBudget() {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap);
+			for (int i = 0 ; i < TICKS ; i++) { //warm up, let the JIT settle
+				bstate.tick(i % 3 - 1, Constants.BALL_DELAYMS);
+			}
+			long before = allocatedBytes();
+			for (int i = 0 ; i < TICKS ; i++) {
+				bstate.tick(i % 3 - 1, Constants.BALL_DELAYMS);
+			}
+			long perTick = (allocatedBytes() - before) / TICKS;
+			assertTrue(perTick <= BYTES_PER_TICK_BUDGET, "tick allocated " + perTick + " bytes");
+		}
+	}
+
+	@Nested
+	class BallTableTests {
+
+		@Test
+		/**
+		 * the primitive path and the per-object path must play the exact same game.
+		 */
+		void primitivePathMatchesObjectPath() {
+			for (String map : new String[] { Constants.initMap, Constants.initMap2, Constants.initMap3, Constants.initMap4 }) {
+				BreakoutState primitive = GameMap.createStateFromDescription(map);
+				BreakoutState objects = GameMap.createStateFromDescription(map);
+				objects.setObjectBallPath(true);
+				for (int t = 0 ; t < 500 ; t++) {
+					primitive.tick(0, Constants.BALL_DELAYMS);
+					objects.tick(0, Constants.BALL_DELAYMS);
+					if (t % 50 == 0) {
+						assertSameGame(objects, primitive);
+					}
+				}
+				assertSameGame(objects, primitive);
+			}
+		}
+
+		@Test
+		/**
+		 * getBalls hands out copies: changing them leaves the columns of the table alone.
+		 */
+		void returnedBallsAreCopies() {
+			BreakoutState bstate = new BreakoutState(new Ball[] { Setups.typicalNormalBall(0) }, Setups.typicalBlocks(),
+					BR, Setups.typicalPaddle());
+			long hash = bstate.getHash();
+			Ball leak = bstate.getBalls()[0];
+			leak.setVelocity(new Vector(0, 0));
+			leak.setLocation(new Circle(new Point(100, 100), Constants.INIT_BALL_DIAMETER));
+			assertEquals(hash, bstate.getHash());
+			assertEquals(Setups.typicalNormalBall(0).getVelocity(), bstate.getBalls()[0].getVelocity());
+			assertEquals(Setups.typicalNormalBall(0).getCenter(), bstate.getBalls()[0].getCenter());
+			assertNotSame(bstate.getBalls()[0], bstate.getBalls()[0]);
+		}
+
+		@Test
+		/**
+		 * moving balls keeps their indices, clearing one shifts the indices of the balls after it.
+		 */
+		void layoutVersionChangesWhenIndicesMayShift() {
+			BallTable table = new BallTable(new Ball[] { Setups.typicalNormalBall(0), Setups.typicalNormalBall(1) });
+			int version = table.getLayoutVersion();
+			table.integrate(Constants.BALL_DELAYMS);
+			assertEquals(version, table.getLayoutVersion());
+			table.clear(0);
+			table.compact(new LinkGraph());
+			assertNotEquals(version, table.getLayoutVersion());
+			assertEquals(1, table.size());
+		}
+
+		@Test
+		void superBallsTakeTheObjectPath() {
+			BreakoutState bstate = new BreakoutState(
+					new Ball[] { Setups.typicalSuperBall(4) },
+					Setups.typicalBlocks(),
+					BR,
+					Setups.typicalPaddle());
+			bstate.tickDuring(Constants.SUPERCHARGED_BALL_LIFETIME + 100);
+			assertFalse(bstate.getBalls()[0] instanceof SuperChargedBall);
+		}
+	}
+
+	@Nested
+	class SweptCollisionTests {
+
+		@Test
+		void timeOfImpactAgainstRect() {
+			// center at x = 0 moving right at 10 per ms, radius 50, rect starting at x = 1050
+			assertEquals(100, SweptCollision.timeOfImpact(0, 0, 10, 0, 50, 1050, -10, 2000, 10, 1000));
+			assertEquals(SweptCollision.NO_IMPACT, SweptCollision.timeOfImpact(0, 0, 10, 0, 50, 1050, -10, 2000, 10, 99));
+			assertEquals(SweptCollision.NO_IMPACT, SweptCollision.timeOfImpact(0, 0, -10, 0, 50, 1050, -10, 2000, 10, 1000));
+			assertEquals(0, SweptCollision.timeOfImpact(1500, 0, 10, 0, 50, 1050, -10, 2000, 10, 1000));
+		}
+
+		@Test
+		/**
+		 * one large step would carry a fast ball over this thin block, the swept step must not.
+		 */
+		void fastBallDoesNotTunnelThroughThinBlock() {
+			Ball ball = Setups.typicalNormalBall(0);
+			ball.setLocation(new Circle(new Point(10000, 15000), Constants.INIT_BALL_DIAMETER));
+			ball.setVelocity(new Vector(Constants.MAX_BALL_SPEED, 0));
+			BlockState thin = new NormalBlockState(new Rect(new Point(20000, 14000), new Point(20100, 16000)));
+			BreakoutState bstate = new BreakoutState(
+					new Ball[] { ball },
+					new BlockState[] { thin },
+					BR,
+					Setups.typicalPaddle());
+
+			bstate.sweptTick(0, 2000);
+
+			assertEquals(0, bstate.getBlocks().length);
+			assertTrue(bstate.getBalls()[0].getVelocity().getX() < 0);
+		}
+	}
+
+	@Nested
+	class FastForwardTests {
+
+		private BreakoutState stateWithBall(Point center, Vector velocity) {
+			Ball ball = Setups.typicalNormalBall(0);
+			ball.setLocation(new Circle(center, Constants.INIT_BALL_DIAMETER));
+			ball.setVelocity(velocity);
+			return new BreakoutState(new Ball[] { ball }, Setups.typicalBlocks(), BR, Setups.typicalPaddle());
+		}
+
+		@Test
+		void withoutEventsFastForwardEqualsTickDuring() {
+			BreakoutState fixed = stateWithBall(new Point(10000, 5000), new Vector(3, 2));
+			BreakoutState events = stateWithBall(new Point(10000, 5000), new Vector(3, 2));
+			fixed.tickDuring(1000);
+			events.fastForward(1000);
+			assertTrue(BreakoutState.sameBallArray(fixed.getBalls(), events.getBalls()));
+		}
+
+		@Test
+		/**
+		 * one bounce on the left wall: same velocity afterwards, centers within the documented tolerance.
+		 */
+		void wallBounceWithinTolerance() {
+			BreakoutState fixed = stateWithBall(new Point(3000, 5000), new Vector(-7, 0));
+			BreakoutState events = stateWithBall(new Point(3000, 5000), new Vector(-7, 0));
+			fixed.tickDuring(1000);
+			events.fastForward(1000);
+			Ball f = fixed.getBalls()[0];
+			Ball e = events.getBalls()[0];
+			assertEquals(f.getVelocity(), e.getVelocity());
+			assertEquals(f.getCenter().getY(), e.getCenter().getY());
+			int tolerance = 2 * Constants.MAX_BALL_SPEED * Constants.BALL_DELAYMS;
+			assertTrue(Math.abs(f.getCenter().getX() - e.getCenter().getX()) <= tolerance);
+		}
+	}
+
+	@Nested
+	class BatchSimulatorTests {
+
+		@Test
+		/**
+		 * running in parallel must give the same games as running them one by one.
+		 */
+		void batchMatchesSequentialRun() {
+			String[] maps = { Constants.initMap, Constants.initMap2, Constants.initMap3, Constants.initMap4 };
+			int n = 32;
+			int ticks = 300;
+			BreakoutState[] games = new BreakoutState[n];
+			BreakoutState[] expected = new BreakoutState[n];
+			BatchSimulator.InputSource[] inputs = new BatchSimulator.InputSource[n];
+			for (int i = 0 ; i < n ; i++) {
+				games[i] = GameMap.createStateFromDescription(maps[i % maps.length]);
+				expected[i] = GameMap.createStateFromDescription(maps[i % maps.length]);
+				int period = i + 1;
+				inputs[i] = (state, tick) -> (tick / period) % 3 - 1;
+			}
+
+			BatchSimulator.Result result = new BatchSimulator().run(games, inputs, ticks);
+
+			BatchSimulator.Outcome[] outcomes = result.getOutcomes();
+			for (int i = 0 ; i < n ; i++) {
+				int t = 0;
+				while (t < ticks && !expected[i].isDead() && !expected[i].isWon()) {
+					int dir = inputs[i].paddleDir(expected[i], t);
+					if (dir < 0) { expected[i].movePaddleLeft(Constants.BALL_DELAYMS); }
+					if (dir > 0) { expected[i].movePaddleRight(Constants.BALL_DELAYMS); }
+					expected[i].tick(dir, Constants.BALL_DELAYMS);
+					t++;
+				}
+				assertEquals(t, result.getTicksRun(i));
+				assertEquals(outcomeOf(expected[i]), outcomes[i]);
+				assertEquals(expected[i].getBlocks().length, games[i].getBlocks().length);
+				assertSameGame(expected[i], games[i]);
+			}
+			assertEquals(n, result.count(BatchSimulator.Outcome.WON) + result.count(BatchSimulator.Outcome.DEAD)
+					+ result.count(BatchSimulator.Outcome.RUNNING));
+			assertTrue(result.getTicksPerSecond() > 0);
+		}
+
+		@Test
+		/**
+		 * games that are over before the run are reported as such, without being ticked.
+		 */
+		void finishedGamesAreNotTicked() {
+			BreakoutState won = new BreakoutState(new Ball[] { Setups.typicalNormalBall(0) }, new BlockState[] {}, BR,
+					Setups.typicalPaddle());
+			BreakoutState dead = new BreakoutState(new Ball[] {}, Setups.typicalBlocks(), BR, Setups.typicalPaddle());
+			BatchSimulator.InputSource still = (state, tick) -> 0;
+			for (int ticks : new int[] { 0, 10 }) {
+				BatchSimulator.Result result = new BatchSimulator().run(new BreakoutState[] { won, dead },
+						new BatchSimulator.InputSource[] { still, still }, ticks);
+				assertArrayEquals(new BatchSimulator.Outcome[] { BatchSimulator.Outcome.WON, BatchSimulator.Outcome.DEAD },
+						result.getOutcomes());
+				assertEquals(0, result.getTicksRun(0));
+				assertEquals(0, result.getTicksRun(1));
+				assertEquals(0, result.getTotalTicks());
+			}
+			assertEquals(Setups.typicalNormalBall(0).getCenter(), won.getBalls()[0].getCenter());
+		}
+
+		private BatchSimulator.Outcome outcomeOf(BreakoutState game) {
+			if (game.isDead()) { return BatchSimulator.Outcome.DEAD; }
+			if (game.isWon()) { return BatchSimulator.Outcome.WON; }
+			return BatchSimulator.Outcome.RUNNING;
+		}
+	}
+
+	@Nested
+	class LinkGraphTests {
+
+		@Test
+		void linkUnlinkAndMove() {
+			LinkGraph graph = new LinkGraph();
+			graph.link(0, 1);
+			graph.link(0, 2);
+			graph.link(3, 1);
+			graph.link(0, 1); //already linked
+			assertEquals(3, graph.getLinkCount());
+			assertEquals(2, graph.alphaDegree(1));
+
+			graph.unlink(0, 1);
+			assertFalse(graph.isLinked(0, 1));
+			assertEquals(1, graph.alphaDegree(1));
+
+			graph.moveBall(3, 1);
+			assertTrue(graph.isLinked(1, 1));
+			assertEquals(0, graph.ballDegree(3));
+			assertEquals(1, graph.alphaPeer(1, 0));
+
+			graph.clearAlpha(2);
+			assertEquals(1, graph.getLinkCount());
+		}
+
+		@Test
+		void gettersKeepTheGivenLinks() {
+			Ball ball = Setups.typicalNormalBall(0);
+			Alpha alpha = new Alpha(ball.getLocation(), ball.getVelocity());
+			Alpha lonely = new Alpha(ball.getLocation(), ball.getVelocity());
+			ball.linkTo(alpha);
+			BreakoutState bstate = new BreakoutState(
+					Setups.typicalBlocks(), BR, Setups.typicalPaddle(),
+					new Ball[] { ball }, new Alpha[] { lonely, alpha });
+
+			Alpha[] resAlphas = bstate.getAlphas();
+			assertEquals(2, resAlphas.length);
+			assertTrue(resAlphas[0].getBalls().isEmpty());
+			assertEquals(1, resAlphas[1].getBalls().size());
+			assertEquals(1, bstate.getBalls()[0].getAlphas().size());
+		}
+	}
+
+	@Nested
+	class CounterTests {
+
+		@Test
+		/**
+		 * the counters answer like the copying getters. That they do not allocate is checked by
+		 * StateBenchmark.isWonAndIsDead, with -prof gc.
+		 */
+		void isWonAndIsDeadMatchGetters() {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap4);
+			bstate.tickDuring(2000);
+			assertEquals(bstate.getBalls().length == 0, bstate.isDead());
+			assertEquals(bstate.getBlocks().length == 0 && !bstate.isDead(), bstate.isWon());
+		}
+
+		@Test
+		/**
+		 * the counters follow every change of a game: blocks that are destroyed or only hit, and in the ball table,
+		 * balls that are replicated (added), removed and compacted away.
+		 */
+		void countersFollowHitsRemovalsAndReplications() {
+			BlockState[] typical = Setups.typicalBlocks();
+			BreakoutState bstate = new BreakoutState(
+					new Ball[] { Setups.typicalNormalBall(0), Setups.typicalNormalBall(1) },
+					new BlockState[] { typical[0], typical[1] },
+					BR,
+					Setups.typicalPaddle());
+			for (int t = 0; t < 2000; ++t) {
+				bstate.tick(0, Constants.BALL_DELAYMS);
+				assertEquals(bstate.getBalls().length == 0, bstate.isDead());
+				assertEquals(bstate.getBlocks().length == 0 && !bstate.isDead(), bstate.isWon());
+				assertEquals(bstate.getBlocks().length, bstate.getBlockStore().getLiveCount());
+			}
+			assertTrue(bstate.getBlocks().length < 2);
+
+			BallTable table = new BallTable(new Ball[] { Setups.typicalNormalBall(0) });
+			table.add(Setups.typicalNormalBall(1)); //replicas
+			table.add(Setups.typicalSuperBall(2));
+			assertEquals(3, table.getLiveCount());
+			table.clear(1);
+			assertEquals(2, table.getLiveCount());
+			table.compact(new LinkGraph());
+			assertEquals(table.copyAll().length, table.getLiveCount());
+			table.clear(0);
+			table.clear(1);
+			assertEquals(0, table.getLiveCount());
+			table.compact(new LinkGraph());
+			assertEquals(0, table.copyAll().length);
+		}
+	}
+
+	@Nested
+	class VisitorTests {
+
+		@Test
+		/**
+		 * the visitors see exactly what the copying getters return.
+		 */
+		void visitorsMatchGetters() {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap2);
+			bstate.tickDuring(3000);
+
+			BlockState[] blocks = bstate.getBlocks();
+			int[] count = { 0 };
+			bstate.forEachBlock((left, top, right, bottom, color) -> {
+				BlockState expected = blocks[count[0]++];
+				assertEquals(expected.getLocation().getTopLeft(), new Point(left, top));
+				assertEquals(expected.getLocation().getBottomRight(), new Point(right, bottom));
+				assertEquals(expected.getColor(), color);
+			});
+			assertEquals(blocks.length, count[0]);
+
+			Ball[] balls = bstate.getBalls();
+			count[0] = 0;
+			bstate.forEachBall((x, y, diameter, color) -> {
+				Ball expected = balls[count[0]++];
+				assertEquals(expected.getCenter(), new Point(x, y));
+				assertEquals(expected.getLocation().getDiameter(), diameter);
+				assertEquals(expected.getColor(), color);
+			});
+			assertEquals(balls.length, count[0]);
+
+			PaddleState paddle = bstate.getPaddle();
+			bstate.visitPaddle((left, top, right, bottom, colors) -> {
+				assertEquals(paddle.getLocation().getTopLeft(), new Point(left, top));
+				assertEquals(paddle.getLocation().getBottomRight(), new Point(right, bottom));
+				assertArrayEquals(paddle.getActualColors(), colors);
+			});
+		}
+	}
+
+	@Nested
+	class GameRandomTests {
+
+		@Test
+		/**
+		 * the same seed gives the same sequence, and restoring the state replays it.
+		 */
+		void seededSequenceIsReproducible() {
+			GameRandom a = new GameRandom(42);
+			GameRandom b = new GameRandom(42);
+			for (int i = 0; i < 100; ++i) {
+				assertEquals(a.nextLong(), b.nextLong());
+			}
+			long saved = a.getState();
+			int[] first = new int[100];
+			for (int i = 0; i < first.length; ++i) {
+				first[i] = a.nextInt(3);
+				assertTrue(0 <= first[i] && first[i] < 3);
+			}
+			a.setState(saved);
+			for (int i = 0; i < first.length; ++i) {
+				assertEquals(first[i], a.nextInt(3));
+			}
+			assertThrows(IllegalArgumentException.class, () -> a.nextInt(0));
+		}
+
+		@Test
+		void nextIntIsRoughlyUniform() {
+			GameRandom random = new GameRandom(GameRandom.DEFAULT_SEED);
+			int[] counts = new int[3];
+			for (int i = 0; i < 30000; ++i) {
+				counts[random.nextInt(3)]++;
+			}
+			for (int count : counts) {
+				assertTrue(Math.abs(count - 10000) < 500);
+			}
+		}
+
+		@Test
+		/**
+		 * the color a replicating paddle falls back to only depends on the generator's state.
+		 */
+		void paddleTransitionIsReproducible() {
+			for (long seed = 0; seed < 20; ++seed) {
+				Color[] expected = new Color[2];
+				for (int run = 0; run < 2; ++run) {
+					GameRandom random = new GameRandom(seed);
+					PaddleState paddle = new ReplicatingPaddleState(new Point(5000, 5000),
+							Constants.TYPICAL_PADDLE_COLORS(), Constants.TYPICAL_PADDLE_COLORS()[0], 2);
+					PaddleState after = paddle.stateAfterHit(random);
+					assertTrue(after instanceof NormalPaddleState);
+					expected[run] = after.getCurColor();
+				}
+				assertEquals(expected[0], expected[1]);
+			}
+		}
+
+		@Test
+		void paddleTransitionWithoutGeneratorStillWorks() {
+			PaddleState paddle = new ReplicatingPaddleState(new Point(5000, 5000),
+					Constants.TYPICAL_PADDLE_COLORS(), Constants.TYPICAL_PADDLE_COLORS()[0], 2);
+			PaddleState after = paddle.stateAfterHit();
+			assertTrue(after instanceof NormalPaddleState);
+			assertEquals(paddle.getLocation(), after.getLocation());
+		}
+
+		@Test
+		void seedIsPartOfTheState() {
+			BreakoutState a = GameMap.createStateFromDescription(Constants.initMap4, 7);
+			BreakoutState b = GameMap.createStateFromDescription(Constants.initMap4, 7);
+			assertEquals(7, a.getRandom().getState());
+			assertEquals(a.getRandom().nextLong(), b.getRandom().nextLong());
+			assertEquals(GameRandom.DEFAULT_SEED,
+					GameMap.createStateFromDescription(Constants.initMap4).getRandom().getState());
+		}
+	}
+
+	@Nested
+	class JournalTests {
+
+		/**
+		 * Drive `game` the way SimulationLoop does, with some irregular inputs mixed in.
+		 */
+		private void play(BreakoutState game, GameRandom input, int ticks) {
+			for (int t = 0; t < ticks && !game.isDead(); ++t) {
+				int dir = input.nextInt(3) - 1;
+				int elapsed = input.nextInt(10) == 0 ? 1 + input.nextInt(Constants.MAX_ELAPSED_TIME) : Constants.BALL_DELAYMS;
+				if (input.nextInt(20) == 0) {
+					//a move that does not match the tick.
+					game.movePaddleRight(elapsed);
+					game.tick(0, elapsed);
+					continue;
+				}
+				if (dir < 0) { game.movePaddleLeft(elapsed); }
+				if (dir > 0) { game.movePaddleRight(elapsed); }
+				game.tick(dir, elapsed);
+			}
+		}
+
+		@Test
+		/**
+		 * replaying the journal, also after a round trip through its binary form, gives the recorded game.
+		 */
+		void replayReproducesGame() {
+			for (String map : new String[] { Constants.initMap, Constants.initMap2, Constants.initMap3, Constants.initMap4 }) {
+				InputJournal journal = new InputJournal(map, 1234);
+				BreakoutState recorded = journal.newGame();
+				play(recorded, new GameRandom(99), 2000);
+
+				BreakoutState replayed = new ReplayEngine(journal).replay();
+				assertSameGame(recorded, replayed);
+				assertEquals(recorded.getRandom().getState(), replayed.getRandom().getState());
+				InputJournal read = InputJournal.fromBytes(journal.toByteArray());
+				assertEquals(map, read.getDescription());
+				assertEquals(1234, read.getSeed());
+				assertEquals(journal.getTickCount(), read.getTickCount());
+				assertSameGame(recorded, new ReplayEngine(read).replay());
+			}
+		}
+
+		@Test
+		/**
+		 * replay(n) stops right after tick n.
+		 */
+		void replayStopsAtTick() {
+			InputJournal journal = new InputJournal(Constants.initMap2, 5);
+			BreakoutState recorded = journal.newGame();
+			play(recorded, new GameRandom(7), 300);
+			BreakoutState atTick300 = new ReplayEngine(journal).replay();
+			long ticks = journal.getTickCount();
+			play(recorded, new GameRandom(8), 300);
+
+			assertSameGame(atTick300, new ReplayEngine(journal).replay(ticks));
+			assertSameGame(recorded, new ReplayEngine(journal).replay());
+		}
+
+		@Test
+		void encodingIsCompact() {
+			InputJournal journal = new InputJournal(Constants.initMap4, 0);
+			BreakoutState game = journal.newGame();
+			for (int t = 0; t < 1000; ++t) {
+				game.tick(0, Constants.BALL_DELAYMS);
+			}
+			for (int t = 0; t < 1000; ++t) {
+				game.movePaddleLeft(Constants.BALL_DELAYMS);
+				game.tick(-1, Constants.BALL_DELAYMS);
+			}
+			assertEquals(2000, journal.getTickCount());
+			assertTrue(journal.encodedRuns().length <= 6);
+		}
+
+		@Test
+		void recordedGamesRefuseFastForward() {
+			BreakoutState game = new InputJournal(Constants.initMap4, 0).newGame();
+			assertThrows(IllegalStateException.class, () -> game.fastForward(1000));
+		}
+
+		@Test
+		void corruptJournalsAreRejected() {
+			byte[] bytes = new InputJournal(Constants.initMap4, 0).toByteArray();
+			bytes[0] ^= 1;
+			assertThrows(IllegalArgumentException.class, () -> InputJournal.fromBytes(bytes));
+			byte[] truncated = Arrays.copyOf(new InputJournal(Constants.initMap4, 0).toByteArray(), 10);
+			assertThrows(IllegalArgumentException.class, () -> InputJournal.fromBytes(truncated));
+		}
+
+		@Test
+		/**
+		 * a decoded state plays on exactly like the encoded one.
+		 */
+		void stateCodecRoundTrips() {
+			InputJournal journal = new InputJournal(Constants.initMap3, 42);
+			BreakoutState game = journal.newGame();
+			play(game, new GameRandom(3), 500);
+			BreakoutState copy = StateCodec.decode(StateCodec.encode(game));
+			assertSameGame(game, copy);
+			assertEquals(game.getRandom().getState(), copy.getRandom().getState());
+			for (int t = 0; t < 500; ++t) {
+				game.tick(1, Constants.BALL_DELAYMS);
+				copy.tick(1, Constants.BALL_DELAYMS);
+			}
+			assertSameGame(game, copy);
+		}
+
+		@Test
+		/**
+		 * seek(n) gives the same game as replay(n), before, at, between and after keyframes.
+		 */
+		void seekMatchesReplay() {
+			InputJournal journal = new InputJournal(Constants.initMap2, 11, 100);
+			BreakoutState recorded = journal.newGame();
+			play(recorded, new GameRandom(5), 1000);
+			assertEquals(journal.getTickCount() / 100, journal.getKeyframeCount());
+
+			ReplayEngine engine = new ReplayEngine(journal);
+			for (long n : new long[] { 0, 1, 99, 100, 101, 250, 500, 999, journal.getTickCount(), Long.MAX_VALUE }) {
+				BreakoutState replayed = engine.replay(n);
+				BreakoutState sought = engine.seek(n);
+				assertSameGame(replayed, sought);
+				assertEquals(replayed.getRandom().getState(), sought.getRandom().getState());
+			}
+			assertSameGame(recorded, engine.seek(Long.MAX_VALUE));
+		}
+
+		@Test
+		void keyframesSurviveSerialization() {
+			InputJournal journal = new InputJournal(Constants.initMap4, 8, 64);
+			BreakoutState recorded = journal.newGame();
+			play(recorded, new GameRandom(13), 700);
+			InputJournal read = InputJournal.fromBytes(journal.toByteArray());
+			assertEquals(journal.getKeyframeCount(), read.getKeyframeCount());
+			assertEquals(journal.getTickCount(), read.getTickCount());
+			ReplayEngine engine = new ReplayEngine(read);
+			assertSameGame(recorded, engine.seek(Long.MAX_VALUE));
+			assertSameGame(new ReplayEngine(journal).replay(321), engine.seek(321));
+		}
+	}
+
+	@Nested
+	class SnapshotTests {
+
+		@TempDir
+		Path dir;
+
+		/**
+		 * A state with every block type, both ball types, a linked and an unlinked alpha and a replicating paddle.
+		 */
+		private BreakoutState richState() {
+			Ball ball = Setups.typicalNormalBall(0);
+			Ball superBall = Setups.typicalSuperBall(1);
+			Alpha linked = new Alpha(ball.getLocation(), ball.getVelocity());
+			Alpha lonely = new Alpha(superBall.getLocation(), superBall.getVelocity());
+			ball.linkTo(linked);
+			superBall.linkTo(linked);
+			PaddleState paddle = new ReplicatingPaddleState(Setups.typicalPaddle().getCenter(),
+					Constants.TYPICAL_PADDLE_COLORS(), Constants.TYPICAL_PADDLE_COLORS()[1], 3);
+			BreakoutState res = new BreakoutState(Setups.typicalBlocks(), BR, paddle,
+					new Ball[] { ball, superBall }, new Alpha[] { lonely, linked });
+			res.setSeed(77);
+			return res;
+		}
+
+		@Test
+		void snapshotRoundTrips() throws IOException {
+			BreakoutState state = richState();
+			Path file = dir.resolve("state" + SnapshotFile.SUFFIX);
+			SnapshotFile.write(state, file);
+			BreakoutState read = SnapshotFile.read(file);
+
+			assertSameGame(state, read);
+			assertEquals(3, ((SturdyBlockState) read.getBlocks()[1]).getLivesLeft());
+			assertEquals(((SuperChargedBall) state.getBalls()[1]).getLifetime(),
+					((SuperChargedBall) read.getBalls()[1]).getLifetime());
+			assertEquals(3, ((ReplicatingPaddleState) read.getPaddle()).getCount());
+			Alpha[] alphas = read.getAlphas();
+			assertEquals(2, alphas.length);
+			assertTrue(alphas[0].getBalls().isEmpty());
+			assertEquals(2, alphas[1].getBalls().size());
+			assertEquals(77, read.getRandom().getState());
+		}
+
+		@Test
+		void scanVisitsEverySnapshot() throws IOException {
+			for (int i = 0; i < 20; ++i) {
+				BreakoutState state = GameMap.createStateFromDescription(Constants.initMap, i);
+				state.tick(1, Constants.BALL_DELAYMS);
+				SnapshotFile.write(state, dir.resolve(i + SnapshotFile.SUFFIX));
+			}
+			Files.writeString(dir.resolve("notes.txt"), "not a snapshot");
+			BreakoutState expected = GameMap.createStateFromDescription(Constants.initMap, 7);
+			expected.tick(1, Constants.BALL_DELAYMS);
+
+			AtomicReference<BreakoutState> seventh = new AtomicReference<>();
+			int count = SnapshotFile.scan(dir, (file, state) -> {
+				if (file.getFileName().toString().equals("7" + SnapshotFile.SUFFIX)) {
+					seventh.set(state);
+				}
+			});
+			assertEquals(20, count);
+			assertSameGame(expected, seventh.get());
+			assertEquals(expected.getRandom().getState(), seventh.get().getRandom().getState());
+		}
+
+		@Test
+		void corruptSnapshotsAreRejected() throws IOException {
+			Path file = dir.resolve("state" + SnapshotFile.SUFFIX);
+			SnapshotFile.write(richState(), file);
+			byte[] bytes = Files.readAllBytes(file);
+			bytes[bytes.length - 1] ^= 1;
+			Files.write(file, bytes);
+			assertThrows(IllegalArgumentException.class, () -> SnapshotFile.read(file));
+			Files.write(file, Arrays.copyOf(bytes, 10));
+			assertThrows(IllegalArgumentException.class, () -> SnapshotFile.read(file));
+		}
+	}
+
+	@Nested
+	class ForkTests {
+
+		@Test
+		/**
+		 * a fork evolves like its source under the same inputs, and independently under other inputs.
+		 */
+		void forkEvolvesIndependently() {
+			BreakoutState game = GameMap.createStateFromDescription(Constants.initMap3, 21);
+			for (int t = 0; t < 200; ++t) {
+				game.tick(t % 3 - 1, Constants.BALL_DELAYMS);
+			}
+			BreakoutState same = game.fork();
+			BreakoutState other = game.fork();
+			assertSameGame(game, same);
+			assertEquals(game.getRandom().getState(), same.getRandom().getState());
+
+			for (int t = 0; t < 2000 && !game.isDead(); ++t) {
+				game.movePaddleRight(Constants.BALL_DELAYMS);
+				game.tick(1, Constants.BALL_DELAYMS);
+				same.movePaddleRight(Constants.BALL_DELAYMS);
+				same.tick(1, Constants.BALL_DELAYMS);
+				other.movePaddleLeft(Constants.BALL_DELAYMS);
+				other.tick(-1, Constants.BALL_DELAYMS);
+			}
+			assertSameGame(game, same);
+			assertFalse(game.getPaddle().equalContent(other.getPaddle()));
+		}
+
+		@Test
+		void forkSharesNoMovingEntities() {
+			Ball ball = Setups.typicalNormalBall(0);
+			Alpha alpha = new Alpha(ball.getLocation(), ball.getVelocity());
+			ball.linkTo(alpha);
+			BreakoutState game = new BreakoutState(Setups.typicalBlocks(), BR, Setups.typicalPaddle(),
+					new Ball[] { ball, Setups.typicalSuperBall(2) }, new Alpha[] { alpha });
+			BreakoutState fork = game.fork();
+
+			assertSameGame(game, fork);
+			assertNotSame(game.getBalls()[0], fork.getBalls()[0]);
+			assertNotSame(game.getAlphas()[0], fork.getAlphas()[0]);
+			assertEquals(1, fork.getAlphas()[0].getBalls().size());
+			assertEquals(((SuperChargedBall) game.getBalls()[1]).getLifetime(),
+					((SuperChargedBall) fork.getBalls()[1]).getLifetime());
+
+			Point ballCenter = game.getBalls()[0].getLocation().getCenter();
+			Point alphaCenter = game.getAlphas()[0].getLocation().getCenter();
+			fork.tick(0, Constants.BALL_DELAYMS);
+			assertEquals(ballCenter, game.getBalls()[0].getLocation().getCenter());
+			assertEquals(alphaCenter, game.getAlphas()[0].getLocation().getCenter());
+			assertNotEquals(ballCenter, fork.getBalls()[0].getLocation().getCenter());
+		}
+	}
+
+	@Nested
+	class HashTests {
+
+		@Test
+		/**
+		 * the incremental hash stays equal to the hash computed from scratch, through hits, bounces and paddle moves.
+		 */
+		void incrementalHashMatchesRecomputation() {
+			for (String map : new String[] { Constants.initMap, Constants.initMap2, Constants.initMap3, Constants.initMap4 }) {
+				BreakoutState game = GameMap.createStateFromDescription(map, 3);
+				GameRandom input = new GameRandom(17);
+				for (int t = 0; t < 3000 && !game.isDead(); ++t) {
+					int dir = input.nextInt(3) - 1;
+					if (dir < 0) { game.movePaddleLeft(Constants.BALL_DELAYMS); }
+					if (dir > 0) { game.movePaddleRight(Constants.BALL_DELAYMS); }
+					game.tick(dir, Constants.BALL_DELAYMS);
+					assertEquals(game.recomputeHash(), game.getHash());
+				}
+			}
+		}
+
+		@Test
+		void equalGamesHaveEqualHashes() {
+			BreakoutState a = GameMap.createStateFromDescription(Constants.initMap2, 9);
+			BreakoutState b = GameMap.createStateFromDescription(Constants.initMap2, 9);
+			for (int t = 0; t < 500; ++t) {
+				a.tick(0, Constants.BALL_DELAYMS);
+				b.tick(0, Constants.BALL_DELAYMS);
+				assertEquals(a.getHash(), b.getHash());
+			}
+			assertEquals(a.getHash(), a.fork().getHash());
+			assertEquals(a.getHash(), StateCodec.decode(StateCodec.encode(a)).getHash());
+		}
+
+		@Test
+		void hashCoversPaddleBlocksAndBalls() {
+			BreakoutState game = new BreakoutState(Setups.typicalBlocks(), BR, Setups.typicalPaddle(),
+					new Ball[] { Setups.typicalNormalBall(1) }, new Alpha[] {});
+			long before = game.getHash();
+			game.movePaddleRight(Constants.BALL_DELAYMS);
+			assertNotEquals(before, game.getHash());
+
+			BreakoutState hit = new BreakoutState(Setups.typicalBlocks(), BR, Setups.typicalPaddle(),
+					new Ball[] { Setups.typicalNormalBall(1) }, new Alpha[] {});
+			int lives = ((SturdyBlockState) hit.getBlocks()[1]).getLivesLeft();
+			long hash = hit.getHash();
+			for (int t = 0; t < 1000 && ((SturdyBlockState) hit.getBlocks()[1]).getLivesLeft() == lives; ++t) {
+				hit.tick(0, 1);
+				assertNotEquals(hash, hit.getHash());
+				hash = hit.getHash();
+			}
+			assertTrue(((SturdyBlockState) hit.getBlocks()[1]).getLivesLeft() < lives);
+			assertEquals(hit.recomputeHash(), hit.getHash());
+		}
+	}
+
+	@Nested
+	class TickProfileTests {
+
+		@Test
+		void profilingDoesNotChangeTheGame() {
+			BreakoutState plain = GameMap.createStateFromDescription(Constants.initMap3, 5);
+			BreakoutState profiled = GameMap.createStateFromDescription(Constants.initMap3, 5);
+			profiled.setProfiling(true);
+			for (int t = 0; t < 2000 && !plain.isDead(); ++t) {
+				plain.tick(0, Constants.BALL_DELAYMS);
+				profiled.tick(0, Constants.BALL_DELAYMS);
+			}
+			assertSameGame(plain, profiled);
+			assertEquals(plain.getHash(), profiled.getHash());
+		}
+
+		@Test
+		void profileCountsStepsAndBlockHits() {
+			BreakoutState game = new BreakoutState(Setups.typicalBlocks(), BR, Setups.typicalPaddle(),
+					new Ball[] { Setups.typicalNormalBall(1) }, new Alpha[] {});
+			game.setProfiling(true);
+			int version = game.getBlockVersion();
+			for (int t = 0; t < 1000; ++t) {
+				game.tick(0, 1);
+			}
+			TickProfile profile = game.getTickProfile();
+			assertEquals(1000, profile.getSteps());
+			assertEquals((1000 + TickProfiler.SAMPLE_PERIOD - 1) / TickProfiler.SAMPLE_PERIOD, profile.getSampledSteps());
+			assertTrue(game.getBlockVersion() > version);
+			assertEquals(game.getBlockVersion() - version, profile.getHits(TickStage.BOUNCE_BALLS_ON_BLOCKS));
+			assertEquals(0, profile.getHits(TickStage.STEP_PRE_BALLS));
+			assertTrue(profile.getTotalNanos() > 0);
+
+			game.setProfiling(true);
+			assertEquals(0, game.getTickProfile().getSteps());
+		}
+
+		@Test
+		void profileIsOnlyAvailableWhileProfiling() {
+			BreakoutState game = GameMap.createStateFromDescription(Constants.initMap, 1);
+			assertFalse(game.isProfiling());
+			assertThrows(IllegalStateException.class, () -> game.getTickProfile());
+			game.setProfiling(true);
+			assertFalse(game.fork().isProfiling());
+			game.setProfiling(false);
+			assertThrows(IllegalStateException.class, () -> game.getTickProfile());
+		}
+	}
+
+	@Nested
+	class FusedStepTests {
+
+		@Test
+		/**
+		 * the fused step plays the exact same game as the stage pipeline, with the paddle moving around.
+		 */
+		void fusedStepMatchesPipeline() {
+			for (String map : new String[] { Constants.initMap, Constants.initMap2, Constants.initMap3, Constants.initMap4 }) {
+				for (boolean objectPath : new boolean[] { false, true }) {
+					BreakoutState phased = GameMap.createStateFromDescription(map, 4);
+					BreakoutState fused = GameMap.createStateFromDescription(map, 4);
+					phased.setObjectBallPath(objectPath);
+					fused.setObjectBallPath(objectPath);
+					fused.setFusedStep(true);
+					GameRandom input = new GameRandom(23);
+					for (int t = 0; t < 2000 && !phased.isDead(); ++t) {
+						int dir = input.nextInt(3) - 1;
+						for (BreakoutState game : new BreakoutState[] { phased, fused }) {
+							if (dir < 0) { game.movePaddleLeft(Constants.BALL_DELAYMS); }
+							if (dir > 0) { game.movePaddleRight(Constants.BALL_DELAYMS); }
+							game.tick(dir, Constants.BALL_DELAYMS);
+						}
+						assertEquals(phased.getHash(), fused.getHash());
+					}
+					assertSameGame(phased, fused);
+					assertEquals(phased.getBlockVersion(), fused.getBlockVersion());
+				}
+			}
+		}
+
+		@Test
+		void fusedStepHandlesSuperBallsAndAlphas() {
+			Ball ball = Setups.typicalSuperBall(4);
+			Alpha alpha = new Alpha(ball.getLocation(), ball.getVelocity());
+			ball.linkTo(alpha);
+			BreakoutState phased = new BreakoutState(Setups.typicalBlocks(), BR, Setups.typicalPaddle(),
+					new Ball[] { ball }, new Alpha[] { alpha });
+			BreakoutState fused = phased.fork();
+			fused.setFusedStep(true);
+			for (int t = 0; t < 1000; ++t) {
+				phased.tick(0, 5);
+				fused.tick(0, 5);
+			}
+			assertSameGame(phased, fused);
+			assertEquals(phased.getHash(), fused.getHash());
+			assertEquals(phased.getAlphaCount(), fused.getAlphaCount());
+			assertTrue(fused.fork().isFusedStep());
+		}
+
+		@Test
+		/**
+		 * linked alphas bounce on the walls while their balls hit the blocks. Magnetism may change the balls between
+		 * the stages, so the fused step has to move and bounce them in the pipeline's order to play the same game.
+		 */
+		void fusedStepMatchesPipelineWithLinkedAlphasOnWallsAndBlocks() {
+			Ball toNormal = Setups.typicalNormalBall(0);
+			Ball toSturdy = Setups.typicalNormalBall(1);
+			Ball toWall = Setups.typicalNormalBall(4);
+			Alpha toLeft = new Alpha(new Circle(new Point(1000, 10000), Constants.ALPHA_DIAMETER), new Vector(-7, 3));
+			Alpha toTop = new Alpha(new Circle(new Point(20000, 1000), Constants.ALPHA_DIAMETER), new Vector(4, -6));
+			toNormal.linkTo(toLeft);
+			toSturdy.linkTo(toLeft);
+			toSturdy.linkTo(toTop);
+			toWall.linkTo(toTop);
+			for (boolean objectPath : new boolean[] { false, true }) {
+				BreakoutState phased = new BreakoutState(Setups.typicalBlocks(), BR, Setups.typicalPaddle(),
+						new Ball[] { toNormal, toSturdy, toWall }, new Alpha[] { toLeft, toTop });
+				phased.setObjectBallPath(objectPath);
+				BreakoutState fused = phased.fork();
+				fused.setFusedStep(true);
+				for (int t = 0; t < 500; ++t) {
+					phased.tick(0, Constants.BALL_DELAYMS);
+					fused.tick(0, Constants.BALL_DELAYMS);
+					assertEquals(phased.getHash(), fused.getHash());
+				}
+				assertTrue(phased.getBlocks().length < Setups.typicalBlocks().length);
+				assertSameGame(phased, fused);
+				Alpha[] expected = phased.getAlphas();
+				Alpha[] actual = fused.getAlphas();
+				assertEquals(expected.length, actual.length);
+				for (int a = 0; a < expected.length; ++a) {
+					assertEquals(expected[a].getCenter(), actual[a].getCenter());
+					assertEquals(expected[a].getVelocity(), actual[a].getVelocity());
+					assertEquals(expected[a].getBalls().size(), actual[a].getBalls().size());
+				}
+			}
+		}
+
+		@Test
+		/**
+		 * ball 0, below the field, and ball 1 both reach the same one-hit block in one step: in both paths it goes to
+		 * ball 0, which comes first.
+		 */
+		void ballBelowFieldAndLaterBallHitTheSameBlockInIndexOrder() {
+			int left = Constants.BLOCK_WIDTH;
+			int centerX = left + Constants.BLOCK_WIDTH / 2;
+			BlockState block = new NormalBlockState(new Rect(new Point(left, Constants.HEIGHT - Constants.BLOCK_HEIGHT),
+					new Point(left + Constants.BLOCK_WIDTH, Constants.HEIGHT)));
+			Ball below = Setups.typicalNormalBall(0);
+			below.setLocation(new Circle(new Point(centerX, Constants.HEIGHT + 100), Constants.INIT_BALL_DIAMETER));
+			below.setVelocity(new Vector(0, -1));
+			Ball above = Setups.typicalNormalBall(0);
+			above.setLocation(new Circle(new Point(centerX, Constants.HEIGHT - Constants.BLOCK_HEIGHT - 300),
+					Constants.INIT_BALL_DIAMETER));
+			above.setVelocity(new Vector(0, 1));
+			for (boolean objectPath : new boolean[] { false, true }) {
+				BreakoutState phased = new BreakoutState(new Ball[] { below.copy(), above.copy() },
+						new BlockState[] { block }, BR, Setups.typicalPaddle());
+				phased.setObjectBallPath(objectPath);
+				BreakoutState fused = phased.fork();
+				fused.setFusedStep(true);
+				phased.tick(0, Constants.BALL_DELAYMS);
+				fused.tick(0, Constants.BALL_DELAYMS);
+
+				assertEquals(0, phased.getBlocks().length);
+				assertSameGame(phased, fused);
+				assertEquals(phased.getHash(), fused.getHash());
+			}
+		}
+	}
+
+	@Nested
+	class KernelTests {
+
+		@Test
+		void borderQueryFindsExactlyTheBallsTouchingTheBorder() {
+			BreakoutState game = GameMap.createStateFromDescription(Constants.initMap2, 6);
+			for (int t = 0; t < 300; ++t) {
+				game.tick(0, Constants.BALL_DELAYMS);
+				BallTable balls = game.getBallTable();
+				int candidates = balls.queryBorder(game.getBottomRight());
+				int k = 0;
+				for (int i = 0; i < balls.size(); ++i) {
+					if (balls.touchesBorder(i, game.getBottomRight())) {
+						assertEquals(i, balls.getCandidate(k++));
+					}
+				}
+				assertEquals(k, candidates);
+				assertEquals(game.recomputeHash(), game.getHash());
+			}
+		}
+	}
+
+}
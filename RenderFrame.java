@@ -0,0 +1,350 @@
+package breakout;
+
+import java.awt.Color;
+import java.util.Arrays;
+
+/**
+ * An immutable picture of a BreakoutState, as published by the simulation thread for the renderer.
+ *
+ * All coordinates are game coordinates, packed in int arrays:
+ *  - blocks: left, top, right, bottom per block,
+ *  - balls and alphas: centerX, centerY, diameter per entity,
+ *  - links: ballX, ballY, alphaX, alphaY per link,
+ *  - paddle: left, top, right, bottom.
+ * A frame is built in one go by capture() and never changes afterwards, so it can be handed to another thread
+ * through a plain atomic reference.
+ *
+ * A frame also remembers the ball, alpha, link and paddle positions of the frame before it, so that a renderer can
+ * interpolate between the two. Balls, alphas and links are only interpolated while the same index designates the
+ * same entity in both frames (see BreakoutState.getLayoutVersion); otherwise they are shown at their current
+ * positions. A frame shares the arrays of the frame before it, not the frame itself, so frames never form a chain. For the same reason, a frame shares the block arrays of the frame before it
+ * when no block changed in between: a renderer can then tell by identity (sameBlocksAs) that its cached blocks
+ * are still valid.
+ *
+ * @immutable
+ */
+final class RenderFrame {
+
+	static final int BLOCK_STRIDE = 4;
+	static final int BALL_STRIDE = 3;
+	static final int LINK_STRIDE = 4;
+
+	private final long sequence;
+	private final long timestampNanos;
+	private final int blockVersion;
+	private final int layoutVersion;
+	private final int[] blocks;
+	private final Color[] blockColors;
+	private final int[] balls;
+	private final Color[] ballColors;
+	private final int[] alphas;
+	private final Color[] alphaColors;
+	private final int[] links;
+	private final int[] paddle;
+	private final Color[] paddleColors;
+	private final int[] prevBalls;
+	private final int[] prevAlphas;
+	private final int[] prevLinks;
+	private final int[] prevPaddle;
+	private final boolean won;
+	private final boolean dead;
+
+	private RenderFrame(long sequence, long timestampNanos, int blockVersion, int layoutVersion, int[] blocks,
+			Color[] blockColors, int[] balls, Color[] ballColors, int[] alphas, Color[] alphaColors, int[] links,
+			int[] paddle, Color[] paddleColors, RenderFrame previous, boolean won, boolean dead) {
+		this.sequence = sequence;
+		this.timestampNanos = timestampNanos;
+		this.blockVersion = blockVersion;
+		this.layoutVersion = layoutVersion;
+		this.blocks = blocks;
+		this.blockColors = blockColors;
+		this.balls = balls;
+		this.ballColors = ballColors;
+		this.alphas = alphas;
+		this.alphaColors = alphaColors;
+		this.links = links;
+		this.paddle = paddle;
+		this.paddleColors = paddleColors;
+		boolean sameLayout = previous != null && previous.layoutVersion == layoutVersion
+				&& previous.balls.length == balls.length && previous.alphas.length == alphas.length
+				&& previous.links.length == links.length;
+		this.prevBalls = sameLayout ? previous.balls : balls;
+		this.prevAlphas = sameLayout ? previous.alphas : alphas;
+		this.prevLinks = sameLayout ? previous.links : links;
+		this.prevPaddle = previous != null ? previous.paddle : paddle;
+		this.won = won;
+		this.dead = dead;
+	}
+
+	/**
+	 * Take a picture of the given state, without a previous frame to interpolate from.
+	 *
+	 * @pre | state != null
+	 * @inspects | state
+	 * @post | result != null
+	 */
+	static RenderFrame capture(BreakoutState state, long sequence, long timestampNanos) {
+		return capture(state, sequence, timestampNanos, null);
+	}
+
+	/**
+	 * Take a picture of the given state, that interpolates from `previous` (which may be null).
+	 * `previous` must have been captured from the same state.
+	 *
+	 * @pre | state != null
+	 * @inspects | state
+	 * @post | result != null
+	 */
+	static RenderFrame capture(BreakoutState state, long sequence, long timestampNanos, RenderFrame previous) {
+		int blockVersion = state.getBlockVersion();
+		int[] blockData;
+		Color[] blockColors;
+		if (previous != null && previous.blockVersion == blockVersion) {
+			blockData = previous.blocks;
+			blockColors = previous.blockColors;
+		} else {
+			Packer blocks = new Packer(BLOCK_STRIDE);
+			state.forEachBlock((left, top, right, bottom, color) -> blocks.add(color, left, top, right, bottom));
+			blockData = blocks.data();
+			blockColors = blocks.colors();
+		}
+		Packer balls = new Packer(BALL_STRIDE);
+		state.forEachBall((x, y, diameter, color) -> balls.add(color, x, y, diameter));
+		Packer alphas = new Packer(BALL_STRIDE);
+		state.forEachAlpha((x, y, diameter, color) -> alphas.add(color, x, y, diameter));
+		Packer links = new Packer(LINK_STRIDE);
+		state.forEachLink((ballX, ballY, alphaX, alphaY) -> links.add(null, ballX, ballY, alphaX, alphaY));
+		int[] paddle = new int[4];
+		Color[][] paddleColors = new Color[1][];
+		state.visitPaddle((left, top, right, bottom, colors) -> {
+			paddle[0] = left;
+			paddle[1] = top;
+			paddle[2] = right;
+			paddle[3] = bottom;
+			paddleColors[0] = colors;
+		});
+		return new RenderFrame(sequence, timestampNanos, blockVersion, state.getLayoutVersion(),
+				blockData, blockColors, balls.data(), balls.colors(), alphas.data(), alphas.colors(),
+				links.data(), paddle, paddleColors[0], previous, state.isWon(), state.isDead());
+	}
+
+	/**
+	 * Accumulates fixed-size int records and their colors. There is one add per stride, without varargs, so that
+	 * capturing an entity allocates nothing beyond growing the buffers.
+	 */
+	private static class Packer {
+		private final int stride;
+		private int[] data = new int[64];
+		private Color[] colors = new Color[16];
+		private int count;
+
+		Packer(int stride) {
+			this.stride = stride;
+		}
+
+		/**
+		 * @pre | stride == 3
+		 */
+		void add(Color color, int a, int b, int c) {
+			int offset = append(color);
+			data[offset] = a;
+			data[offset + 1] = b;
+			data[offset + 2] = c;
+		}
+
+		/**
+		 * @pre | stride == 4
+		 */
+		void add(Color color, int a, int b, int c, int d) {
+			int offset = append(color);
+			data[offset] = a;
+			data[offset + 1] = b;
+			data[offset + 2] = c;
+			data[offset + 3] = d;
+		}
+
+		// makes room for one more record with the given color, and returns the offset of its values in data.
+		private int append(Color color) {
+			if ((count + 1) * stride > data.length) {
+				data = Arrays.copyOf(data, 2 * data.length + stride);
+			}
+			if (count == colors.length) {
+				colors = Arrays.copyOf(colors, 2 * colors.length);
+			}
+			colors[count] = color;
+			return count++ * stride;
+		}
+
+		int[] data() {
+			return Arrays.copyOf(data, count * stride);
+		}
+
+		Color[] colors() {
+			return Arrays.copyOf(colors, count);
+		}
+	}
+
+	/**
+	 * Increases by one with every published frame.
+	 */
+	long getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * System.nanoTime() at the tick this frame was captured after.
+	 */
+	long getTimestampNanos() {
+		return timestampNanos;
+	}
+
+	/**
+	 * How far a renderer at time nowNanos is from the previous frame towards this one, for frames that are
+	 * `stepMillis` ms of game time apart: this frame's timestamp is the moment the game reached it, and it is
+	 * shown one step late so there is always a pair to interpolate between.
+	 *
+	 * @pre | stepMillis > 0
+	 * @post | 0 <= result && result <= 1
+	 */
+	double interpolationAt(long nowNanos, int stepMillis) {
+		double alpha = (nowNanos - timestampNanos) / (stepMillis * 1e6);
+		return Math.max(0, Math.min(1, alpha));
+	}
+
+	boolean isWon() {
+		return won;
+	}
+
+	boolean isDead() {
+		return dead;
+	}
+
+	/**
+	 * Whether this frame shows the very same blocks as `other`, because no block changed in between.
+	 * A false result does not guarantee that the blocks differ.
+	 */
+	boolean sameBlocksAs(RenderFrame other) {
+		return other != null && other.blocks == blocks;
+	}
+
+	int getBlockCount() {
+		return blockColors.length;
+	}
+
+	/**
+	 * Coordinate c (0 = left, 1 = top, 2 = right, 3 = bottom) of block i.
+	 */
+	int getBlock(int i, int c) {
+		return blocks[i * BLOCK_STRIDE + c];
+	}
+
+	Color getBlockColor(int i) {
+		return blockColors[i];
+	}
+
+	int getBallCount() {
+		return ballColors.length;
+	}
+
+	/**
+	 * Value c (0 = centerX, 1 = centerY, 2 = diameter) of ball i.
+	 */
+	int getBall(int i, int c) {
+		return balls[i * BALL_STRIDE + c];
+	}
+
+	Color getBallColor(int i) {
+		return ballColors[i];
+	}
+
+	int getAlphaCount() {
+		return alphaColors.length;
+	}
+
+	/**
+	 * Value c (0 = centerX, 1 = centerY, 2 = diameter) of alpha i.
+	 */
+	int getAlpha(int i, int c) {
+		return alphas[i * BALL_STRIDE + c];
+	}
+
+	Color getAlphaColor(int i) {
+		return alphaColors[i];
+	}
+
+	int getLinkCount() {
+		return links.length / LINK_STRIDE;
+	}
+
+	/**
+	 * Value c (0 = ballX, 1 = ballY, 2 = alphaX, 3 = alphaY) of link i.
+	 */
+	int getLink(int i, int c) {
+		return links[i * LINK_STRIDE + c];
+	}
+
+	/**
+	 * Coordinate c (0 = left, 1 = top, 2 = right, 3 = bottom) of the paddle.
+	 */
+	int getPaddle(int c) {
+		return paddle[c];
+	}
+
+	/**
+	 * Value c of ball i, a fraction `alpha` of the way from the previous frame to this one.
+	 * Diameters are never interpolated.
+	 *
+	 * @pre | 0 <= alpha && alpha <= 1
+	 */
+	int getBall(int i, int c, double alpha) {
+		return c == 2 ? getBall(i, c) : lerp(prevBalls, balls, i * BALL_STRIDE + c, alpha);
+	}
+
+	/**
+	 * Value c of alpha i, a fraction `alpha` of the way from the previous frame to this one.
+	 * Diameters are never interpolated.
+	 *
+	 * @pre | 0 <= alpha && alpha <= 1
+	 */
+	int getAlpha(int i, int c, double alpha) {
+		return c == 2 ? getAlpha(i, c) : lerp(prevAlphas, alphas, i * BALL_STRIDE + c, alpha);
+	}
+
+	/**
+	 * Value c of link i, a fraction `alpha` of the way from the previous frame to this one.
+	 *
+	 * @pre | 0 <= alpha && alpha <= 1
+	 */
+	int getLink(int i, int c, double alpha) {
+		return lerp(prevLinks, links, i * LINK_STRIDE + c, alpha);
+	}
+
+	/**
+	 * Coordinate c of the paddle, a fraction `alpha` of the way from the previous frame to this one.
+	 *
+	 * @pre | 0 <= alpha && alpha <= 1
+	 */
+	int getPaddle(int c, double alpha) {
+		return lerp(prevPaddle, paddle, c, alpha);
+	}
+
+	private static int lerp(int[] from, int[] to, int k, double alpha) {
+		return from[k] + (int) Math.round((to[k] - from[k]) * alpha);
+	}
+
+	/**
+	 * @creates | result
+	 */
+	Color[] getPaddleColors() {
+		return paddleColors.clone();
+	}
+
+	int getPaddleColorCount() {
+		return paddleColors.length;
+	}
+
+	Color getPaddleColor(int k) {
+		return paddleColors[k];
+	}
+
+}
@@ -0,0 +1,225 @@
+package breakout;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import breakout.radioactivity.Ball;
+import breakout.utils.*;
+
+/**
+ * Tests for the way frames get from the simulation thread to the screen: capturing, interpolating and painting them.
+ * The tests of the data structures behind the simulation itself are in PerformanceTests.
+ */
+class RenderingTests {
+
+	@Nested
+	class SimulationLoopTests {
+
+		@Test
+		/**
+		 * a frame is a faithful picture of the state it was captured from.
+		 */
+		void frameMatchesState() {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap2);
+			bstate.tickDuring(3000);
+			RenderFrame frame = RenderFrame.capture(bstate, 7, 42);
+			assertEquals(7, frame.getSequence());
+			assertEquals(42, frame.getTimestampNanos());
+
+			BlockState[] blocks = bstate.getBlocks();
+			assertEquals(blocks.length, frame.getBlockCount());
+			for (int i = 0; i < blocks.length; ++i) {
+				assertEquals(blocks[i].getLocation().getTopLeft(), new Point(frame.getBlock(i, 0), frame.getBlock(i, 1)));
+				assertEquals(blocks[i].getLocation().getBottomRight(), new Point(frame.getBlock(i, 2), frame.getBlock(i, 3)));
+				assertEquals(blocks[i].getColor(), frame.getBlockColor(i));
+			}
+			Ball[] balls = bstate.getBalls();
+			assertEquals(balls.length, frame.getBallCount());
+			for (int i = 0; i < balls.length; ++i) {
+				assertEquals(balls[i].getCenter(), new Point(frame.getBall(i, 0), frame.getBall(i, 1)));
+				assertEquals(balls[i].getLocation().getDiameter(), frame.getBall(i, 2));
+			}
+			assertEquals(bstate.getAlphas().length, frame.getAlphaCount());
+			assertEquals(bstate.getPaddle().getLocation().getTopLeft(), new Point(frame.getPaddle(0), frame.getPaddle(1)));
+			assertArrayEquals(bstate.getPaddle().getActualColors(), frame.getPaddleColors());
+			assertEquals(bstate.isDead(), frame.isDead());
+			assertEquals(bstate.isWon(), frame.isWon());
+		}
+
+		@Test
+		/**
+		 * the loop ticks on its own thread and publishes increasing frames.
+		 */
+		void loopPublishesFrames() throws InterruptedException {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap4);
+			CountDownLatch published = new CountDownLatch(5);
+			Thread test = Thread.currentThread();
+			SimulationLoop loop = new SimulationLoop(bstate, Constants.BALL_DELAYMS, frame -> {
+				assertNotSame(test, Thread.currentThread());
+				published.countDown();
+			});
+			assertEquals(0, loop.getLatestFrame().getSequence());
+			loop.start();
+			assertTrue(published.await(10, TimeUnit.SECONDS));
+			loop.stop();
+			assertFalse(loop.isRunning());
+			assertTrue(loop.getLatestFrame().getSequence() >= 5);
+			assertTrue(loop.getTickStats().getCount() >= 5);
+			assertTrue(loop.getTickStats().getMeanIntervalNanos() > 0);
+		}
+
+		@Test
+		/**
+		 * frames interpolate between the positions of the previous frame and their own.
+		 */
+		void frameInterpolates() {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap4);
+			RenderFrame first = RenderFrame.capture(bstate, 1, 0);
+			bstate.movePaddleRight(Constants.BALL_DELAYMS);
+			bstate.tick(1, Constants.BALL_DELAYMS);
+			RenderFrame second = RenderFrame.capture(bstate, 2, 1_000_000_000L, first);
+
+			assertEquals(first.getBallCount(), second.getBallCount());
+			for (int i = 0; i < second.getBallCount(); ++i) {
+				for (int c = 0; c < 2; ++c) {
+					assertEquals(first.getBall(i, c), second.getBall(i, c, 0));
+					assertEquals(second.getBall(i, c), second.getBall(i, c, 1));
+				}
+				assertEquals(second.getBall(i, 2), second.getBall(i, 2, 0.5));
+			}
+			assertEquals(first.getPaddle(0), second.getPaddle(0, 0));
+			assertEquals(second.getPaddle(0), second.getPaddle(0, 1));
+			assertEquals((first.getPaddle(0) + second.getPaddle(0)) / 2, second.getPaddle(0, 0.5), 1);
+
+			assertEquals(0, second.interpolationAt(0, Constants.BALL_DELAYMS));
+			assertEquals(0.5, second.interpolationAt(1_010_000_000L, Constants.BALL_DELAYMS), 1e-9);
+			assertEquals(1, second.interpolationAt(2_000_000_000L, Constants.BALL_DELAYMS));
+			//without a previous frame, there is nothing to interpolate from.
+			assertEquals(first.getBall(0, 0), first.getBall(0, 0, 0));
+		}
+
+		@Test
+		/**
+		 * whatever the real timing, the loop advances the game in whole fixed steps.
+		 */
+		void loopRunsFixedSteps() throws InterruptedException {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap4);
+			BreakoutState reference = GameMap.createStateFromDescription(Constants.initMap4);
+			AtomicReference<RenderFrame> fifth = new AtomicReference<>();
+			CountDownLatch published = new CountDownLatch(1);
+			SimulationLoop loop = new SimulationLoop(bstate, Constants.BALL_DELAYMS, frame -> {
+				if (frame.getSequence() == 5) {
+					fifth.set(frame);
+					published.countDown();
+				}
+			});
+			loop.start();
+			assertTrue(published.await(10, TimeUnit.SECONDS));
+			loop.stop();
+
+			for (int i = 0; i < 5; ++i) {
+				reference.tick(0, Constants.BALL_DELAYMS);
+			}
+			RenderFrame expected = RenderFrame.capture(reference, 5, 0);
+			assertEquals(expected.getBallCount(), fifth.get().getBallCount());
+			for (int i = 0; i < expected.getBallCount(); ++i) {
+				assertEquals(expected.getBall(i, 0), fifth.get().getBall(i, 0));
+				assertEquals(expected.getBall(i, 1), fifth.get().getBall(i, 1));
+			}
+		}
+	}
+
+	@Nested
+	class FramePainterTests {
+
+		@Test
+		/**
+		 * the painter draws a frame into any Graphics, e.g. an offscreen image.
+		 */
+		void paintsIntoImage() {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap4);
+			RenderFrame frame = RenderFrame.capture(bstate, 0, 0);
+			Dimension size = FramePainter.preferredSize(bstate.getBottomRight());
+			BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = image.createGraphics();
+			new FramePainter().paint(g, frame, 1, bstate.getBottomRight());
+			g.dispose();
+
+			int x = frame.getBall(0, 0) / 50 + 5;
+			int y = frame.getBall(0, 1) / 50 + 5;
+			assertEquals(frame.getBallColor(0).getRGB(), image.getRGB(x, y));
+			int bx = (frame.getBlock(0, 0) + frame.getBlock(0, 2)) / 100 + 5;
+			int by = (frame.getBlock(0, 1) + frame.getBlock(0, 3)) / 100 + 5;
+			assertEquals(frame.getBlockColor(0).getRGB(), image.getRGB(bx, by));
+		}
+
+		private BufferedImage paint(FramePainter painter, RenderFrame frame, Point bottomRight) {
+			Dimension size = FramePainter.preferredSize(bottomRight);
+			BufferedImage image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+			Graphics2D g = image.createGraphics();
+			painter.paint(g, frame, 1, bottomRight);
+			g.dispose();
+			return image;
+		}
+
+		@Test
+		/**
+		 * patching the cached block layer hit by hit gives the same picture as drawing it from scratch.
+		 */
+		void cachedBlocksMatchFreshPaint() {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap3);
+			FramePainter cached = new FramePainter();
+			RenderFrame frame = RenderFrame.capture(bstate, 0, 0);
+			paint(cached, frame, bstate.getBottomRight());
+			int initialBlocks = frame.getBlockCount();
+			for (int t = 1; t <= 3000 && !bstate.isDead() && frame.getBlockCount() > initialBlocks - 5; ++t) {
+				bstate.tick(0, Constants.BALL_DELAYMS);
+				frame = RenderFrame.capture(bstate, t, 0, frame);
+				paint(cached, frame, bstate.getBottomRight());
+			}
+			assertTrue(frame.getBlockCount() < initialBlocks);
+
+			BufferedImage incremental = paint(cached, frame, bstate.getBottomRight());
+			BufferedImage fresh = paint(new FramePainter(), frame, bstate.getBottomRight());
+			for (int y = 0; y < fresh.getHeight(); ++y) {
+				for (int x = 0; x < fresh.getWidth(); ++x) {
+					assertEquals(fresh.getRGB(x, y), incremental.getRGB(x, y));
+				}
+			}
+		}
+
+		@Test
+		/**
+		 * without block changes, only the region around the moving entities is damaged.
+		 */
+		void damageCoversMovingEntitiesOnly() {
+			BreakoutState bstate = GameMap.createStateFromDescription(Constants.initMap3);
+			RenderFrame first = RenderFrame.capture(bstate, 0, 0);
+			bstate.tick(0, Constants.BALL_DELAYMS);
+			RenderFrame second = RenderFrame.capture(bstate, 1, 0, first);
+			assertTrue(second.sameBlocksAs(first));
+
+			Dimension size = FramePainter.preferredSize(bstate.getBottomRight());
+			assertEquals(new Rectangle(0, 0, size.width, size.height),
+					FramePainter.damage(null, second, bstate.getBottomRight()));
+			Rectangle dirty = FramePainter.damage(first, second, bstate.getBottomRight());
+			assertTrue(dirty.width * (long) dirty.height < size.width * (long) size.height / 4);
+			for (int i = 0; i < second.getBallCount(); ++i) {
+				assertTrue(dirty.contains(second.getBall(i, 0) / 50 + 5, second.getBall(i, 1) / 50 + 5));
+				assertTrue(dirty.contains(first.getBall(i, 0) / 50 + 5, first.getBall(i, 1) / 50 + 5));
+			}
+		}
+	}
+
+}
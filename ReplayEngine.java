@@ -0,0 +1,154 @@
+package breakout;
+
+/**
+ * Reconstructs a recorded game from its InputJournal, as fast as the simulation allows:
+ * the game is created from the journal's map description and seed, and the recorded inputs are applied
+ * in order, without any timing, rendering or recording.
+ *
+ * Since a game only depends on its seed and its inputs, the result is identical to the recorded game
+ * after the same number of ticks.
+ *
+ * If the journal contains keyframes, seek starts from the last keyframe before the requested tick instead of
+ * from the start of the game, so its cost is bounded by the keyframe interval rather than by the length of the game.
+ */
+public final class ReplayEngine {
+
+	private final String description;
+	private final long seed;
+	/**
+	 * @representationObject
+	 */
+	private final byte[] runs;
+	/**
+	 * @representationObject
+	 */
+	private final InputJournal.Keyframe[] keyframes;
+
+	/**
+	 * A replay of the inputs recorded in `journal` so far. Inputs recorded later are not replayed.
+	 *
+	 * @throws IllegalArgumentException | journal == null
+	 */
+	public ReplayEngine(InputJournal journal) {
+		if (journal == null)
+			throw new IllegalArgumentException();
+		this.description = journal.getDescription();
+		this.seed = journal.getSeed();
+		this.runs = journal.encodedRuns();
+		this.keyframes = journal.keyframes();
+	}
+
+	/**
+	 * The game after all recorded inputs.
+	 *
+	 * @post | result != null
+	 */
+	public BreakoutState replay() {
+		return replay(Long.MAX_VALUE);
+	}
+
+	/**
+	 * The game right after its first `ticks` ticks (or after all recorded inputs, if there are fewer ticks).
+	 *
+	 * @throws IllegalArgumentException | ticks < 0
+	 * @post | result != null
+	 */
+	public BreakoutState replay(long ticks) {
+		if (ticks < 0)
+			throw new IllegalArgumentException();
+		BreakoutState state = GameMap.createStateFromDescription(description, seed);
+		rollForward(state, new InputJournal.RunReader(runs), 0, ticks);
+		return state;
+	}
+
+	/**
+	 * The game right after its first `ticks` ticks (or after all recorded inputs, if there are fewer ticks),
+	 * reconstructed from the last keyframe at or before that tick. The result is the same as replay(ticks).
+	 *
+	 * @throws IllegalArgumentException | ticks < 0
+	 * @post | result != null
+	 */
+	public BreakoutState seek(long ticks) {
+		if (ticks < 0)
+			throw new IllegalArgumentException();
+		int k = lastKeyframeAtOrBefore(ticks);
+		if (k < 0) {
+			return replay(ticks);
+		}
+		InputJournal.Keyframe keyframe = keyframes[k];
+		BreakoutState state = StateCodec.decode(runs, keyframe.stateOffset, keyframe.stateLength);
+		InputJournal.RunReader reader = new InputJournal.RunReader(runs, keyframe.resumeOffset, keyframe.resumeElapsed);
+		rollForward(state, reader, keyframe.tick, ticks);
+		return state;
+	}
+
+	/**
+	 * The number of keyframes that seek can start from.
+	 */
+	public int getKeyframeCount() {
+		return keyframes.length;
+	}
+
+	private int lastKeyframeAtOrBefore(long tick) {
+		int lo = 0;
+		int hi = keyframes.length - 1;
+		int res = -1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			if (keyframes[mid].tick <= tick) {
+				res = mid;
+				lo = mid + 1;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Apply the recorded inputs read by `reader` to `state` until it has reached tick `to`, and return the tick reached.
+	 * `state` must be the recorded game right after tick `tick`, and `reader` must start at the inputs that follow it.
+	 *
+	 * @pre | 0 <= tick && tick <= to
+	 * @mutates | state, reader
+	 */
+	private static long rollForward(BreakoutState state, InputJournal.RunReader reader, long tick, long to) {
+		while (tick < to && reader.next()) {
+			int kind = reader.kind();
+			if (kind == InputJournal.KEYFRAME) {
+				continue;
+			}
+			int elapsed = reader.elapsed();
+			long count = reader.count();
+			if (kind != InputJournal.MOVE_LEFT && kind != InputJournal.MOVE_RIGHT) {
+				// stop in the middle of the run at `to`.
+				count = Math.min(count, to - tick);
+				tick += count;
+			}
+			for (long k = 0; k < count; ++k) {
+				apply(state, kind, elapsed);
+			}
+		}
+		return tick;
+	}
+
+	private static void apply(BreakoutState state, int kind, int elapsed) {
+		switch (kind) {
+		case InputJournal.TICK_LEFT -> state.tick(-1, elapsed);
+		case InputJournal.TICK_NONE -> state.tick(0, elapsed);
+		case InputJournal.TICK_RIGHT -> state.tick(1, elapsed);
+		case InputJournal.MOVE_LEFT -> state.movePaddleLeft(elapsed);
+		case InputJournal.MOVE_RIGHT -> state.movePaddleRight(elapsed);
+		case InputJournal.STEP_LEFT -> {
+			state.movePaddleLeft(elapsed);
+			state.tick(-1, elapsed);
+		}
+		case InputJournal.STEP_RIGHT -> {
+			state.movePaddleRight(elapsed);
+			state.tick(1, elapsed);
+		}
+		default -> throw new IllegalArgumentException("corrupt journal");
+		}
+	}
+
+}
@@ -30,13 +30,13 @@ public class ReplicatingPaddleState extends PaddleState {
 	}
 
 	@Override
-	public PaddleState stateAfterHit() {
+	public PaddleState stateAfterHit(GameRandom random) {
 		if (count > 2) {
 			count -= 1;
 			return this;
 		} else {
 			PaddleState res = new NormalPaddleState(getCenter(), getPossibleColors(), getCurColor());
-			res.tossCurColor();
+			res.tossCurColor(random);
 			return res;
 		}
 	}
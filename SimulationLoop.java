@@ -0,0 +1,185 @@
+package breakout;
+
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs a BreakoutState on its own fixed-rate thread, independently of the Swing event dispatch thread.
+ *
+ * Only the simulation thread ever touches the state. After each tick it publishes an immutable RenderFrame
+ * through an atomic reference (single writer, any number of readers), so a renderer always sees a complete frame
+ * without locking, and a slow renderer merely skips frames instead of delaying the physics.
+ * Input is passed the other way through two volatile flags.
+ *
+ * The physics always advances in whole steps of `tickPeriod` ms, however late the thread wakes up: real time is
+ * accumulated and consumed one fixed step at a time, so a game's evolution only depends on its inputs per step.
+ * Each frame carries the positions of the frame before it, and its timestamp is the (real) time at which the game
+ * reached it, which lets a renderer interpolate smoothly between the last two steps.
+ *
+ * Once a published frame is won or dead, the loop stops by itself.
+ */
+class SimulationLoop {
+
+	private final BreakoutState state;
+	private final int tickPeriod;
+	private final Consumer<RenderFrame> onFrame;
+	private final AtomicReference<RenderFrame> latest;
+	private final CadenceStats tickStats = new CadenceStats();
+	private final ScheduledExecutorService executor;
+	private ScheduledFuture<?> task;
+
+	private volatile boolean leftKeyDown;
+	private volatile boolean rightKeyDown;
+
+	// only accessed by the simulation thread.
+	private long prevNanos;
+	private long accumulatedNanos;
+	private long sequence;
+
+	/**
+	 * A loop that ticks `state` in steps of `tickPeriod` ms and passes every published frame to `onFrame`,
+	 * on the simulation thread.
+	 *
+	 * @throws IllegalArgumentException | state == null || onFrame == null
+	 * @throws IllegalArgumentException | tickPeriod <= 0 || tickPeriod > Constants.MAX_ELAPSED_TIME
+	 * @post | getLatestFrame() != null
+	 */
+	SimulationLoop(BreakoutState state, int tickPeriod, Consumer<RenderFrame> onFrame) {
+		if (state == null || onFrame == null)
+			throw new IllegalArgumentException();
+		if (tickPeriod <= 0 || tickPeriod > Constants.MAX_ELAPSED_TIME)
+			throw new IllegalArgumentException();
+		this.state = state;
+		this.tickPeriod = tickPeriod;
+		this.onFrame = onFrame;
+		this.latest = new AtomicReference<>(RenderFrame.capture(state, 0, System.nanoTime()));
+		this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "breakout-simulation");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Start ticking. Does nothing if the loop was started before.
+	 */
+	synchronized void start() {
+		if (task == null && !executor.isShutdown()) {
+			task = executor.scheduleAtFixedRate(this::runTick, 0, tickPeriod, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stop ticking for good. The last published frame remains available.
+	 */
+	synchronized void stop() {
+		executor.shutdown();
+	}
+
+	boolean isRunning() {
+		return !executor.isShutdown();
+	}
+
+	void setLeftKeyDown(boolean down) {
+		leftKeyDown = down;
+	}
+
+	void setRightKeyDown(boolean down) {
+		rightKeyDown = down;
+	}
+
+	/**
+	 * A listener that steers the paddle with the left and right arrow keys.
+	 */
+	KeyListener createKeyListener() {
+		return new KeyAdapter() {
+			@Override
+			public void keyPressed(KeyEvent e) {
+				switch (e.getKeyCode()) {
+				case KeyEvent.VK_RIGHT -> { setRightKeyDown(true); break; }
+				case KeyEvent.VK_LEFT -> { setLeftKeyDown(true); break; }
+				}
+			}
+			@Override
+			public void keyReleased(KeyEvent e) {
+				switch (e.getKeyCode()) {
+				case KeyEvent.VK_RIGHT -> { setRightKeyDown(false); break; }
+				case KeyEvent.VK_LEFT -> { setLeftKeyDown(false); break; }
+				}
+			}
+		};
+	}
+
+	/**
+	 * The most recently published frame. Safe to call from any thread.
+	 *
+	 * @post | result != null
+	 */
+	RenderFrame getLatestFrame() {
+		return latest.get();
+	}
+
+	/**
+	 * Cadence and duration of the ticks run so far.
+	 */
+	CadenceStats getTickStats() {
+		return tickStats;
+	}
+
+	/**
+	 * The game time, in ms, between two published frames.
+	 */
+	int getTickPeriod() {
+		return tickPeriod;
+	}
+
+	private void runTick() {
+		long now = System.nanoTime();
+		if (prevNanos != 0) {
+			// very high elapsed times (for example during debugging) are annoying.
+			accumulatedNanos += Math.min(now - prevNanos, TimeUnit.MILLISECONDS.toNanos(Constants.MAX_ELAPSED_TIME));
+			long stepNanos = TimeUnit.MILLISECONDS.toNanos(tickPeriod);
+			boolean left = leftKeyDown;
+			boolean right = rightKeyDown;
+			while (accumulatedNanos >= stepNanos) {
+				accumulatedNanos -= stepNanos;
+				if (step(left, right, now - accumulatedNanos)) {
+					break;
+				}
+			}
+		}
+		prevNanos = now;
+	}
+
+	// one fixed step; returns whether the game is over.
+	private boolean step(boolean left, boolean right, long reachedNanos) {
+		long start = System.nanoTime();
+		int curPaddleDir = 0;
+		if (left && !right) {
+			state.movePaddleLeft(tickPeriod);
+			curPaddleDir = -1;
+		}
+		if (!left && right) {
+			state.movePaddleRight(tickPeriod);
+			curPaddleDir = 1;
+		}
+		state.tick(curPaddleDir, tickPeriod);
+		RenderFrame frame = RenderFrame.capture(state, ++sequence, reachedNanos, latest.get());
+		latest.set(frame);
+		tickStats.record(start, System.nanoTime());
+		boolean over = frame.isWon() || frame.isDead();
+		if (over) {
+			stop();
+		}
+		onFrame.accept(frame);
+		return over;
+	}
+
+}
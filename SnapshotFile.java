@@ -0,0 +1,138 @@
+package breakout;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Saves BreakoutStates to snapshot files and loads them back, e.g. for crash recovery and test fixtures.
+ *
+ * A snapshot file is a 16 byte header followed by the StateCodec encoding of the state. The header holds, as
+ * big-endian ints, the magic number "BKS1", the format version, the length of the encoding and its CRC-32.
+ * The encoding covers every block, ball and paddle type with its data (the lives of sturdy blocks, the lifetime of
+ * supercharged balls, the count of replicating paddles), the alphas, their links and the game's random state,
+ * so a loaded state plays on exactly like the saved one.
+ *
+ * Files are written through a FileChannel, to a temporary file that then replaces the target in one atomic move,
+ * so a crash never leaves a half-written snapshot. They are read through a MappedByteBuffer and decoded in place,
+ * without copying the file to the heap, which keeps scanning large directories of snapshots cheap.
+ */
+public final class SnapshotFile {
+
+	static final int MAGIC = 0x424B5331;
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 16;
+
+	/**
+	 * The file name extension of snapshot files, as used by scan.
+	 */
+	public static final String SUFFIX = ".bks";
+
+	/**
+	 * Receives the snapshots found by scan.
+	 */
+	public interface SnapshotVisitor {
+		void visit(Path file, BreakoutState state);
+	}
+
+	private SnapshotFile() { throw new AssertionError("This class is not intended to be instantiated"); }
+
+	/**
+	 * Save `state` to `file`, replacing any existing file.
+	 *
+	 * @throws IllegalArgumentException | state == null || file == null
+	 * @throws IllegalArgumentException if the state contains a block, ball or paddle of an unknown type
+	 * @throws IOException if the file cannot be written
+	 * @inspects | state
+	 */
+	public static void write(BreakoutState state, Path file) throws IOException {
+		if (state == null || file == null)
+			throw new IllegalArgumentException();
+		ByteSink payload = new ByteSink();
+		StateCodec.encode(state, payload);
+		CRC32 crc = new CRC32();
+		crc.update(payload.view());
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+				.putInt(MAGIC).putInt(VERSION).putInt(payload.length()).putInt((int) crc.getValue())
+				.flip();
+		ByteBuffer[] buffers = { header, payload.view() };
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel channel = FileChannel.open(temp,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffers[1].hasRemaining()) {
+				channel.write(buffers);
+			}
+			channel.force(false);
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Load the state saved in `file`.
+	 *
+	 * @throws IllegalArgumentException | file == null
+	 * @throws IllegalArgumentException if the file is not a valid snapshot
+	 * @throws IOException if the file cannot be read
+	 * @post | result != null
+	 */
+	public static BreakoutState read(Path file) throws IOException {
+		if (file == null)
+			throw new IllegalArgumentException();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+				throw new IllegalArgumentException("not a snapshot: " + file);
+			// the mapping stays valid after the channel is closed, and decoding does not keep a reference to it.
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return decode(buffer, file);
+		}
+	}
+
+	/**
+	 * Load every snapshot in `directory` (the files whose name ends with SUFFIX) and pass it to `visitor`,
+	 * in no particular order. Returns the number of snapshots visited.
+	 *
+	 * @throws IllegalArgumentException | directory == null || visitor == null
+	 * @throws IllegalArgumentException if one of the files is not a valid snapshot
+	 * @throws IOException if the directory or one of the files cannot be read
+	 */
+	public static int scan(Path directory, SnapshotVisitor visitor) throws IOException {
+		if (directory == null || visitor == null)
+			throw new IllegalArgumentException();
+		int count = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+			for (Path file : files) {
+				if (Files.isRegularFile(file)) {
+					visitor.visit(file, read(file));
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	private static BreakoutState decode(ByteBuffer buffer, Path file) {
+		if (buffer.getInt(0) != MAGIC)
+			throw new IllegalArgumentException("not a snapshot: " + file);
+		if (buffer.getInt(4) != VERSION)
+			throw new IllegalArgumentException("unsupported snapshot version: " + file);
+		int length = buffer.getInt(8);
+		if (length != buffer.limit() - HEADER_SIZE)
+			throw new IllegalArgumentException("truncated snapshot: " + file);
+		ByteBuffer payload = buffer.slice(HEADER_SIZE, length);
+		CRC32 crc = new CRC32();
+		crc.update(payload.duplicate());
+		if ((int) crc.getValue() != buffer.getInt(12))
+			throw new IllegalArgumentException("corrupt snapshot: " + file);
+		return StateCodec.decode(payload);
+	}
+
+}
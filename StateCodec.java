@@ -0,0 +1,386 @@
+package breakout;
+
+import java.awt.Color;
+import java.nio.ByteBuffer;
+
+import breakout.radioactivity.Alpha;
+import breakout.radioactivity.Ball;
+import breakout.radioactivity.NormalBall;
+import breakout.radioactivity.SuperChargedBall;
+import breakout.utils.Circle;
+import breakout.utils.Point;
+import breakout.utils.Rect;
+import breakout.utils.Vector;
+
+/**
+ * Encodes a complete BreakoutState into bytes and back: the field, the blocks (by type, with the lives of sturdy
+ * blocks), the balls (by type, with the lifetime of supercharged balls), the alphas, the links between balls and
+ * alphas, the paddle (by type, with its colors and the count of a replicating paddle) and the state of the game's
+ * random generator. Decoding the bytes gives a game that plays on exactly like the encoded one.
+ * Blocks are encoded from and decoded into the packed columns of BlockStore, so neither materializes them.
+ *
+ * Numbers are coded as (zigzag) varints, see ByteSink. The first byte is the format version.
+ * Only the block, ball and paddle types of this package are supported.
+ */
+final class StateCodec {
+
+	static final int VERSION = 1;
+
+	private static final int NORMAL_BLOCK = 0;
+	private static final int STURDY_BLOCK = 1;
+	private static final int REPLICATOR_BLOCK = 2;
+	private static final int POWERUP_BLOCK = 3;
+
+	private static final int NORMAL_BALL = 0;
+	private static final int SUPERCHARGED_BALL = 1;
+
+	private static final int NORMAL_PADDLE = 0;
+	private static final int REPLICATING_PADDLE = 1;
+
+	/**
+	 * No game has more entities than this; larger counts mean corrupt data.
+	 */
+	private static final int MAX_COUNT = 1 << 20;
+
+	private StateCodec() { throw new AssertionError("This class is not intended to be instantiated"); }
+
+	/**
+	 * @pre | state != null
+	 * @throws IllegalArgumentException if the state contains a block, ball or paddle of an unknown type
+	 * @inspects | state
+	 * @creates | result
+	 */
+	static byte[] encode(BreakoutState state) {
+		ByteSink out = new ByteSink();
+		encode(state, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Append the encoding of `state` to `out`.
+	 *
+	 * @pre | state != null && out != null
+	 * @throws IllegalArgumentException if the state contains a block, ball or paddle of an unknown type
+	 * @mutates | out
+	 */
+	static void encode(BreakoutState state, ByteSink out) {
+		out.writeByte(VERSION);
+		writePoint(out, state.getBottomRight());
+		out.writeLong(state.getRandom().getState());
+
+		BlockStore blocks = state.getBlockStore();
+		out.writeVarLong(blocks.getLiveCount());
+		for (int slot = 0; slot < blocks.getSlotCount(); ++slot) {
+			if (blocks.isLive(slot)) {
+				writeBlock(out, blocks, slot);
+			}
+		}
+
+		BallTable balls = state.getBallTable();
+		int[] ballIndex = new int[balls.size()];
+		int liveBalls = 0;
+		for (int i = 0; i < balls.size(); ++i) {
+			ballIndex[i] = balls.isLive(i) ? liveBalls++ : -1;
+		}
+		out.writeVarLong(liveBalls);
+		for (int i = 0; i < balls.size(); ++i) {
+			if (balls.isLive(i)) {
+				writeBall(out, balls, i);
+			}
+		}
+
+		int[] alphaIndex = new int[state.getAlphaCount()];
+		int liveAlphas = 0;
+		for (int a = 0; a < state.getAlphaCount(); ++a) {
+			alphaIndex[a] = state.getAlpha(a) != null ? liveAlphas++ : -1;
+		}
+		out.writeVarLong(liveAlphas);
+		for (int a = 0; a < state.getAlphaCount(); ++a) {
+			Alpha alpha = state.getAlpha(a);
+			if (alpha != null) {
+				writeCircle(out, alpha.getLocation());
+				writeVector(out, alpha.getVelocity());
+			}
+		}
+
+		LinkGraph links = state.getLinkGraph();
+		int linkCount = 0;
+		for (int i = 0; i < balls.size(); ++i) {
+			for (int k = 0; k < links.ballDegree(i); ++k) {
+				if (ballIndex[i] >= 0 && alphaIndex[links.ballPeer(i, k)] >= 0) {
+					linkCount++;
+				}
+			}
+		}
+		out.writeVarLong(linkCount);
+		for (int i = 0; i < balls.size(); ++i) {
+			for (int k = 0; k < links.ballDegree(i); ++k) {
+				int a = alphaIndex[links.ballPeer(i, k)];
+				if (ballIndex[i] >= 0 && a >= 0) {
+					out.writeVarLong(ballIndex[i]);
+					out.writeVarLong(a);
+				}
+			}
+		}
+
+		writePaddle(out, state.getPaddle());
+	}
+
+	/**
+	 * @pre | bytes != null
+	 * @throws IllegalArgumentException if the bytes are not a valid encoding
+	 * @post | result != null
+	 */
+	static BreakoutState decode(byte[] bytes) {
+		return decode(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Decode the state encoded in bytes[offset .. offset + length - 1].
+	 *
+	 * @pre | bytes != null
+	 * @throws IllegalArgumentException if the bytes are not a valid encoding
+	 * @post | result != null
+	 */
+	static BreakoutState decode(byte[] bytes, int offset, int length) {
+		return decode(new ByteCursor(bytes, offset, offset + length));
+	}
+
+	/**
+	 * Decode the state encoded in the remaining bytes of `buffer`, without copying them and without moving the buffer.
+	 *
+	 * @pre | buffer != null
+	 * @throws IllegalArgumentException if the bytes are not a valid encoding
+	 * @post | result != null
+	 */
+	static BreakoutState decode(ByteBuffer buffer) {
+		return decode(new ByteCursor(buffer));
+	}
+
+	private static BreakoutState decode(ByteCursor in) {
+		if (in.readByte() != VERSION)
+			throw new IllegalArgumentException("unsupported state version");
+		Point bottomRight = readPoint(in);
+		long random = in.readLong();
+
+		BlockStore blocks = readBlocks(in, bottomRight);
+		Ball[] balls = new Ball[in.readVarInt(MAX_COUNT)];
+		for (int i = 0; i < balls.length; ++i) {
+			balls[i] = readBall(in);
+		}
+		Alpha[] alphas = new Alpha[in.readVarInt(MAX_COUNT)];
+		for (int a = 0; a < alphas.length; ++a) {
+			alphas[a] = new Alpha(readCircle(in), readVector(in));
+		}
+		int linkCount = in.readVarInt(MAX_COUNT);
+		for (int k = 0; k < linkCount; ++k) {
+			int b = in.readVarInt(balls.length - 1);
+			int a = in.readVarInt(alphas.length - 1);
+			balls[b].linkTo(alphas[a]);
+		}
+		PaddleState paddle = readPaddle(in);
+		if (in.hasMore())
+			throw new IllegalArgumentException("trailing data");
+
+		BreakoutState res = new BreakoutState(blocks, bottomRight, paddle, balls, alphas);
+		res.getRandom().setState(random);
+		return res;
+	}
+
+	// packed blocks are written from the columns of the store, without materializing them.
+	private static void writeBlock(ByteSink out, BlockStore blocks, int slot) {
+		switch (blocks.getType(slot)) {
+		case BlockStore.NORMAL: out.writeByte(NORMAL_BLOCK); break;
+		case BlockStore.STURDY: out.writeByte(STURDY_BLOCK); break;
+		case BlockStore.REPLICATOR: out.writeByte(REPLICATOR_BLOCK); break;
+		case BlockStore.POWERUP: out.writeByte(POWERUP_BLOCK); break;
+		default:
+			writeBlock(out, blocks.get(slot));
+			return;
+		}
+		out.writeSignedVarLong(blocks.getLeft(slot));
+		out.writeSignedVarLong(blocks.getTop(slot));
+		out.writeSignedVarLong(blocks.getRight(slot));
+		out.writeSignedVarLong(blocks.getBottom(slot));
+		if (blocks.getType(slot) == BlockStore.STURDY) {
+			out.writeVarLong(blocks.getLives(slot));
+		}
+	}
+
+	private static void writeBlock(ByteSink out, BlockState block) {
+		Class<?> type = block.getClass();
+		if (type == NormalBlockState.class) {
+			out.writeByte(NORMAL_BLOCK);
+		} else if (type == SturdyBlockState.class) {
+			out.writeByte(STURDY_BLOCK);
+		} else if (type == ReplicatorBlockState.class) {
+			out.writeByte(REPLICATOR_BLOCK);
+		} else if (type == PowerupBallBlockState.class) {
+			out.writeByte(POWERUP_BLOCK);
+		} else {
+			throw new IllegalArgumentException("unknown block type " + type.getName());
+		}
+		writeRect(out, block.getLocation());
+		if (type == SturdyBlockState.class) {
+			out.writeVarLong(((SturdyBlockState) block).getLivesLeft());
+		}
+	}
+
+	// straight into the columns of a BlockStore: no block is materialized until the game needs it.
+	private static BlockStore readBlocks(ByteCursor in, Point bottomRight) {
+		int count = in.readVarInt(MAX_COUNT);
+		byte[] type = new byte[count];
+		int[] left = new int[count];
+		int[] top = new int[count];
+		int[] right = new int[count];
+		int[] bottom = new int[count];
+		int[] lives = new int[count];
+		boolean packable = true;
+		for (int i = 0; i < count; ++i) {
+			int tag = in.readByte();
+			left[i] = in.readSignedVarInt();
+			top[i] = in.readSignedVarInt();
+			right[i] = in.readSignedVarInt();
+			bottom[i] = in.readSignedVarInt();
+			switch (tag) {
+			case NORMAL_BLOCK: type[i] = BlockStore.NORMAL; break;
+			case STURDY_BLOCK:
+				type[i] = BlockStore.STURDY;
+				lives[i] = in.readVarInt(Integer.MAX_VALUE);
+				packable &= 0 < lives[i] && lives[i] <= Byte.MAX_VALUE;
+				break;
+			case REPLICATOR_BLOCK: type[i] = BlockStore.REPLICATOR; break;
+			case POWERUP_BLOCK: type[i] = BlockStore.POWERUP; break;
+			default: throw new IllegalArgumentException("unknown block type " + tag);
+			}
+			if (left[i] < 0 || top[i] < 0 || left[i] > right[i] || top[i] > bottom[i]
+					|| right[i] > bottomRight.getX() || bottom[i] > bottomRight.getY())
+				throw new IllegalArgumentException("block outside the field");
+		}
+		if (!packable) {
+			//lives a byte cannot hold: such blocks are stored as objects
+			BlockState[] blocks = new BlockState[count];
+			for (int i = 0; i < count; ++i) {
+				Rect location = new Rect(new Point(left[i], top[i]), new Point(right[i], bottom[i]));
+				switch (type[i]) {
+				case BlockStore.NORMAL: blocks[i] = new NormalBlockState(location); break;
+				case BlockStore.STURDY: blocks[i] = new SturdyBlockState(location, lives[i]); break;
+				case BlockStore.REPLICATOR: blocks[i] = new ReplicatorBlockState(location); break;
+				default: blocks[i] = new PowerupBallBlockState(location); break;
+				}
+			}
+			return new BlockStore(blocks, bottomRight);
+		}
+		byte[] packedLives = new byte[count];
+		for (int i = 0; i < count; ++i) {
+			packedLives[i] = (byte) lives[i];
+		}
+		return new BlockStore(bottomRight, type, left, top, right, bottom, packedLives);
+	}
+
+	// the primitive columns of the table are always current, unlike the location of its handles.
+	private static void writeBall(ByteSink out, BallTable balls, int i) {
+		Class<?> type = balls.getHandle(i).getClass();
+		if (type == NormalBall.class) {
+			out.writeByte(NORMAL_BALL);
+		} else if (type == SuperChargedBall.class) {
+			out.writeByte(SUPERCHARGED_BALL);
+		} else {
+			throw new IllegalArgumentException("unknown ball type " + type.getName());
+		}
+		out.writeSignedVarLong(balls.getX(i));
+		out.writeSignedVarLong(balls.getY(i));
+		out.writeSignedVarLong(balls.getDiameter(i));
+		out.writeSignedVarLong(balls.getVelocityX(i));
+		out.writeSignedVarLong(balls.getVelocityY(i));
+		if (type == SuperChargedBall.class) {
+			out.writeSignedVarLong(balls.getLifetime(i));
+		}
+	}
+
+	private static Ball readBall(ByteCursor in) {
+		int type = in.readByte();
+		Circle location = readCircle(in);
+		Vector velocity = readVector(in);
+		switch (type) {
+		case NORMAL_BALL: return new NormalBall(location, velocity);
+		case SUPERCHARGED_BALL: return new SuperChargedBall(location, velocity, in.readSignedVarInt());
+		default: throw new IllegalArgumentException("unknown ball type " + type);
+		}
+	}
+
+	private static void writePaddle(ByteSink out, PaddleState paddle) {
+		Class<?> type = paddle.getClass();
+		if (type == NormalPaddleState.class) {
+			out.writeByte(NORMAL_PADDLE);
+		} else if (type == ReplicatingPaddleState.class) {
+			out.writeByte(REPLICATING_PADDLE);
+		} else {
+			throw new IllegalArgumentException("unknown paddle type " + type.getName());
+		}
+		writePoint(out, paddle.getCenter());
+		Color[] colors = paddle.getPossibleColors();
+		int current = -1;
+		for (int k = 0; k < colors.length; ++k) {
+			out.writeInt(colors[k].getRGB());
+			if (colors[k].equals(paddle.getCurColor())) {
+				current = k;
+			}
+		}
+		out.writeByte(current);
+		if (type == ReplicatingPaddleState.class) {
+			out.writeVarLong(((ReplicatingPaddleState) paddle).getCount());
+		}
+	}
+
+	private static PaddleState readPaddle(ByteCursor in) {
+		int type = in.readByte();
+		Point center = readPoint(in);
+		Color[] colors = new Color[3];
+		for (int k = 0; k < colors.length; ++k) {
+			colors[k] = new Color(in.readInt(), true);
+		}
+		int current = in.readByte();
+		if (current >= colors.length)
+			throw new IllegalArgumentException("corrupt paddle");
+		switch (type) {
+		case NORMAL_PADDLE: return new NormalPaddleState(center, colors, colors[current]);
+		case REPLICATING_PADDLE:
+			return new ReplicatingPaddleState(center, colors, colors[current], in.readVarInt(Integer.MAX_VALUE));
+		default: throw new IllegalArgumentException("unknown paddle type " + type);
+		}
+	}
+
+	private static void writePoint(ByteSink out, Point p) {
+		out.writeSignedVarLong(p.getX());
+		out.writeSignedVarLong(p.getY());
+	}
+
+	private static Point readPoint(ByteCursor in) {
+		return new Point(in.readSignedVarInt(), in.readSignedVarInt());
+	}
+
+	private static void writeVector(ByteSink out, Vector v) {
+		out.writeSignedVarLong(v.getX());
+		out.writeSignedVarLong(v.getY());
+	}
+
+	private static Vector readVector(ByteCursor in) {
+		return new Vector(in.readSignedVarInt(), in.readSignedVarInt());
+	}
+
+	private static void writeRect(ByteSink out, Rect r) {
+		writePoint(out, r.getTopLeft());
+		writePoint(out, r.getBottomRight());
+	}
+
+	private static void writeCircle(ByteSink out, Circle c) {
+		writePoint(out, c.getCenter());
+		out.writeSignedVarLong(c.getDiameter());
+	}
+
+	private static Circle readCircle(ByteCursor in) {
+		return new Circle(readPoint(in), in.readSignedVarInt());
+	}
+
+}
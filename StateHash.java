@@ -0,0 +1,83 @@
+package breakout;
+
+import breakout.utils.Point;
+import breakout.utils.Rect;
+
+/**
+ * The keys that make up BreakoutState.getHash(): one 64-bit key per block, ball, link and paddle, derived from
+ * their content with GameRandom.mix and a seed per kind of element, so that keys are the same on every platform and
+ * in every run (unlike Object.hashCode).
+ *
+ * A collection hashes to the sum (modulo 2^64) of the keys of its elements. A sum is updated in O(1) when an element
+ * is added, removed or changed, by subtracting its old key and adding its new one, and unlike a XOR it does not
+ * cancel out for two equal elements.
+ */
+final class StateHash {
+
+	private static final long BLOCK = 0x2545_F491_4F6C_DD1DL;
+	private static final long BALL = 0x9E6C_63D0_676A_9A99L;
+	private static final long LINK = 0xD6E8_FEB8_6659_FD93L;
+	private static final long PADDLE = 0xA076_1D64_78BD_642FL;
+
+	private StateHash() { throw new AssertionError("This class is not intended to be instantiated"); }
+
+	/**
+	 * @pre | block != null
+	 */
+	static long block(BlockState block) {
+		Rect location = block.getLocation();
+		return block(block.getClass(), location.getTopLeft().getX(), location.getTopLeft().getY(),
+				location.getBottomRight().getX(), location.getBottomRight().getY(),
+				block instanceof SturdyBlockState ? ((SturdyBlockState) block).getLivesLeft() : 0);
+	}
+
+	/**
+	 * The key of a block of the given class, location and lives (0 if it is not sturdy), without the block.
+	 *
+	 * @pre | type != null
+	 */
+	static long block(Class<?> type, int left, int top, int right, int bottom, int lives) {
+		long h = GameRandom.mix(BLOCK ^ type(type));
+		h = GameRandom.mix(h ^ pack(left, top));
+		h = GameRandom.mix(h ^ pack(right, bottom));
+		return GameRandom.mix(h ^ lives);
+	}
+
+	static long ball(int x, int y, int vx, int vy, int diameter, byte kind, int lifetime) {
+		long h = GameRandom.mix(BALL ^ pack(x, y));
+		h = GameRandom.mix(h ^ pack(vx, vy));
+		return GameRandom.mix(h ^ pack(diameter, lifetime) ^ ((long) kind << 56));
+	}
+
+	static long link(int ball, int alpha) {
+		return GameRandom.mix(LINK ^ pack(ball, alpha));
+	}
+
+	/**
+	 * @pre | paddle != null
+	 */
+	static long paddle(PaddleState paddle) {
+		long h = GameRandom.mix(PADDLE ^ type(paddle));
+		h = GameRandom.mix(h ^ pack(paddle.getCenter()));
+		int count = paddle instanceof ReplicatingPaddleState ? ((ReplicatingPaddleState) paddle).getCount() : 0;
+		return GameRandom.mix(h ^ pack(paddle.getCurColor().getRGB(), count));
+	}
+
+	// String.hashCode is specified, so the key of a class does not depend on the run.
+	private static long type(Object object) {
+		return type(object.getClass());
+	}
+
+	private static long type(Class<?> type) {
+		return type.getName().hashCode();
+	}
+
+	private static long pack(Point p) {
+		return pack(p.getX(), p.getY());
+	}
+
+	private static long pack(int high, int low) {
+		return (long) high << 32 | (low & 0xFFFF_FFFFL);
+	}
+
+}
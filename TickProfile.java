@@ -0,0 +1,134 @@
+package breakout;
+
+import java.util.Arrays;
+
+/**
+ * Where the steps of a game spent their time, per TickStage, since profiling was enabled (see
+ * BreakoutState.setProfiling), and what happened in each stage: blocks hit, balls and alphas removed and created.
+ *
+ * Event counts cover every step. Times only cover the sampled steps (one out of TickProfiler.SAMPLE_PERIOD),
+ * so compare stages by getMeanNanos rather than by getNanos.
+ *
+ * @immutable
+ */
+public final class TickProfile {
+
+	private final long steps;
+	private final long sampledSteps;
+	/**
+	 * Indexed by stage ordinal.
+	 *
+	 * @representationObject
+	 */
+	private final long[] nanos;
+	/**
+	 * @representationObject
+	 */
+	private final long[] hits;
+	/**
+	 * @representationObject
+	 */
+	private final long[] removals;
+	/**
+	 * @representationObject
+	 */
+	private final long[] creations;
+
+	TickProfile(long steps, long sampledSteps, long[] nanos, long[] hits, long[] removals, long[] creations) {
+		this.steps = steps;
+		this.sampledSteps = sampledSteps;
+		this.nanos = nanos.clone();
+		this.hits = hits.clone();
+		this.removals = removals.clone();
+		this.creations = creations.clone();
+	}
+
+	/**
+	 * The number of steps profiled: one per tick, more for fastForward.
+	 */
+	public long getSteps() {
+		return steps;
+	}
+
+	/**
+	 * The number of steps whose stages were timed.
+	 */
+	public long getSampledSteps() {
+		return sampledSteps;
+	}
+
+	/**
+	 * The total time `stage` took in the sampled steps.
+	 *
+	 * @throws IllegalArgumentException | stage == null
+	 */
+	public long getNanos(TickStage stage) {
+		return nanos[index(stage)];
+	}
+
+	/**
+	 * The mean time `stage` took per sampled step, or 0 if no step was sampled.
+	 *
+	 * @throws IllegalArgumentException | stage == null
+	 */
+	public double getMeanNanos(TickStage stage) {
+		return sampledSteps == 0 ? 0 : nanos[index(stage)] / (double) sampledSteps;
+	}
+
+	/**
+	 * The total time of all stages in the sampled steps.
+	 */
+	public long getTotalNanos() {
+		return Arrays.stream(nanos).sum();
+	}
+
+	/**
+	 * The number of times `stage` damaged or destroyed a block.
+	 *
+	 * @throws IllegalArgumentException | stage == null
+	 */
+	public long getHits(TickStage stage) {
+		return hits[index(stage)];
+	}
+
+	/**
+	 * The number of balls and alphas `stage` removed from the game.
+	 *
+	 * @throws IllegalArgumentException | stage == null
+	 */
+	public long getRemovals(TickStage stage) {
+		return removals[index(stage)];
+	}
+
+	/**
+	 * The number of balls and alphas `stage` added to the game, e.g. by replication.
+	 *
+	 * @throws IllegalArgumentException | stage == null
+	 */
+	public long getCreations(TickStage stage) {
+		return creations[index(stage)];
+	}
+
+	private static int index(TickStage stage) {
+		if (stage == null)
+			throw new IllegalArgumentException();
+		return stage.ordinal();
+	}
+
+	/**
+	 * One line per stage: its mean time per sampled step, its share of the total time and its events.
+	 */
+	@Override
+	public String toString() {
+		StringBuilder res = new StringBuilder();
+		res.append(String.format("%d steps (%d timed)%n", steps, sampledSteps));
+		long total = Math.max(1, getTotalNanos());
+		for (TickStage stage : TickStage.values()) {
+			int s = stage.ordinal();
+			res.append(String.format("%-24s %10.0f ns %5.1f%%  hits %d  removals %d  creations %d%n", stage,
+					getMeanNanos(stage), 100.0 * nanos[s] / total, hits[s], removals[s], creations[s]));
+		}
+		return res.toString();
+	}
+
+}
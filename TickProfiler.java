@@ -0,0 +1,65 @@
+package breakout;
+
+/**
+ * Accumulates the TickProfile of a BreakoutState while profiling is enabled.
+ *
+ * The event counts are exact. Stage times are only measured on one step out of SAMPLE_PERIOD: reading the clock
+ * around each of the nine stages of every step would cost more than the stages of a small game themselves.
+ * Like the game it profiles, a profiler is confined to one thread.
+ */
+final class TickProfiler {
+
+	/**
+	 * Stage times are measured on the steps whose number is a multiple of this.
+	 */
+	static final int SAMPLE_PERIOD = 16;
+
+	private static final int STAGE_COUNT = TickStage.values().length;
+
+	private long steps;
+	private long sampledSteps;
+	/**
+	 * Indexed by stage ordinal.
+	 *
+	 * @representationObject
+	 */
+	private final long[] nanos = new long[STAGE_COUNT];
+	private final long[] hits = new long[STAGE_COUNT];
+	private final long[] removals = new long[STAGE_COUNT];
+	private final long[] creations = new long[STAGE_COUNT];
+
+	/**
+	 * Start a step. Returns whether its stages are to be timed.
+	 *
+	 * @mutates | this
+	 */
+	boolean beginStep() {
+		if (steps++ % SAMPLE_PERIOD == 0) {
+			sampledSteps++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Account for one run of `stage`: it took `elapsedNanos` (0 if the step is not timed), hit `hits` blocks,
+	 * removed `removed` and created `created` balls and alphas.
+	 *
+	 * @mutates | this
+	 */
+	void record(TickStage stage, long elapsedNanos, int hits, int removed, int created) {
+		int s = stage.ordinal();
+		nanos[s] += elapsedNanos;
+		this.hits[s] += hits;
+		removals[s] += removed;
+		creations[s] += created;
+	}
+
+	/**
+	 * @creates | result
+	 */
+	TickProfile snapshot() {
+		return new TickProfile(steps, sampledSteps, nanos, hits, removals, creations);
+	}
+
+}
@@ -0,0 +1,28 @@
+package breakout;
+
+/**
+ * The stages of a step of BreakoutState (see tick), in the order they run.
+ * A TickProfile reports the time spent in each stage and the events each stage caused.
+ */
+public enum TickStage {
+
+	/** Move the balls and alphas by their velocity. */
+	STEP_PRE_BALLS,
+	/** Bounce balls and alphas on the walls. Magnetism may occur. */
+	BOUNCE_PRE_BALLS_ON_WALLS,
+	/** Remove the balls and alphas that left the field. */
+	REMOVE_DEAD_PRE_BALLS,
+	/** Bounce balls on blocks, which may damage or destroy the blocks and replace the balls. */
+	BOUNCE_BALLS_ON_BLOCKS,
+	/** Bounce balls on the paddle. New balls may be created, radioactivity may occur. */
+	BOUNCE_BALLS_ON_PADDLE,
+	/** Bounce alphas on the paddle. Anti-radioactivity may occur. */
+	BOUNCE_ALPHAS_ON_PADDLE,
+	/** Keep balls and alphas within the field. */
+	CLAMP_PRE_BALLS,
+	/** Drop the slots of removed balls and alphas. */
+	COMPACT_PRE_BALLS,
+	/** Turn supercharged balls whose lifetime ran out back into normal balls. */
+	NO_LONGER_SUPER_CHARGED;
+
+}
@@ -0,0 +1,55 @@
+package breakout;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * BallKernel on IntVector lanes of the preferred width of the platform (8 balls with AVX2, 16 with AVX-512).
+ * The balls past the last full lane are left to the scalar loops of BallKernel.
+ *
+ * The only class of module breakout-vector, the only module compiled with jdk.incubator.vector. BallKernel finds it
+ * through reflection; nothing refers to it directly.
+ */
+final class VectorBallKernel {
+
+	private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+	private VectorBallKernel() { throw new AssertionError("This class is not intended to be instantiated"); }
+
+	static void integrate(int[] x, int[] y, int[] vx, int[] vy, int n, int elapsedTime) {
+		int bound = SPECIES.loopBound(n);
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			IntVector xs = IntVector.fromArray(SPECIES, x, i);
+			IntVector ys = IntVector.fromArray(SPECIES, y, i);
+			xs.add(IntVector.fromArray(SPECIES, vx, i).mul(elapsedTime)).intoArray(x, i);
+			ys.add(IntVector.fromArray(SPECIES, vy, i).mul(elapsedTime)).intoArray(y, i);
+		}
+		BallKernel.integrate(x, y, vx, vy, i, n, elapsedTime);
+	}
+
+	static int borderCandidates(int[] x, int[] y, int[] diameter, int n, int width, int height, int[] out) {
+		int bound = SPECIES.loopBound(n);
+		int count = 0;
+		int i = 0;
+		for (; i < bound; i += SPECIES.length()) {
+			IntVector xs = IntVector.fromArray(SPECIES, x, i);
+			IntVector ys = IntVector.fromArray(SPECIES, y, i);
+			// (d + 1) / 2 as a shift: diameters are not negative
+			IntVector rs = IntVector.fromArray(SPECIES, diameter, i).add(1).lanewise(VectorOperators.ASHR, 1);
+			VectorMask<Integer> touching = xs.sub(rs).compare(VectorOperators.LE, 0)
+					.or(ys.sub(rs).compare(VectorOperators.LE, 0))
+					.or(xs.add(rs).compare(VectorOperators.GE, width))
+					.or(ys.add(rs).compare(VectorOperators.GE, height));
+			if (touching.anyTrue()) {
+				for (long lanes = touching.toLong(); lanes != 0; lanes &= lanes - 1) {
+					out[count++] = i + Long.numberOfTrailingZeros(lanes);
+				}
+			}
+		}
+		return BallKernel.borderCandidates(x, y, diameter, i, n, width, height, out, count);
+	}
+
+}
@@ -0,0 +1,48 @@
+package breakout;
+
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for VectorBallKernel, through BallKernel. They are skipped unless the test JVM has the incubating
+ * jdk.incubator.vector module: "mvn -P vector test".
+ */
+class VectorKernelTests {
+
+	@Test
+	/**
+	 * the lanes of VectorBallKernel and the scalar loops of BallKernel agree, tails included, wrapping included.
+	 */
+	void vectorKernelMatchesScalarKernel() {
+		assumeTrue(BallKernel.VECTORIZED);
+		GameRandom random = new GameRandom(24);
+		for (int n : new int[] { 0, 1, 7, 8, 9, 33, 1000, 4097 }) {
+			int[] x = new int[n], y = new int[n], vx = new int[n], vy = new int[n], diameter = new int[n];
+			for (int i = 0; i < n; ++i) {
+				x[i] = random.nextInt(Constants.WIDTH + 2000) - 1000;
+				y[i] = random.nextInt(Constants.HEIGHT + 2000) - 1000;
+				vx[i] = random.nextInt(21) - 10;
+				vy[i] = random.nextInt(21) - 10;
+				diameter[i] = random.nextInt(2 * Constants.INIT_BALL_DIAMETER);
+			}
+			if (n > 0) {
+				x[0] = Integer.MAX_VALUE; //wraps around
+			}
+			int[] scalarX = x.clone(), scalarY = y.clone();
+			BallKernel.integrateVector(x, y, vx, vy, n, Constants.BALL_DELAYMS);
+			BallKernel.integrate(scalarX, scalarY, vx, vy, 0, n, Constants.BALL_DELAYMS);
+			assertArrayEquals(scalarX, x);
+			assertArrayEquals(scalarY, y);
+
+			int[] found = new int[n], scalarFound = new int[n];
+			int count = BallKernel.borderCandidatesVector(x, y, diameter, n, Constants.WIDTH, Constants.HEIGHT, found);
+			assertEquals(BallKernel.borderCandidates(x, y, diameter, 0, n, Constants.WIDTH, Constants.HEIGHT,
+					scalarFound, 0), count);
+			assertArrayEquals(scalarFound, found);
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package breakout;
+
+import breakout.radioactivity.Alpha;
+import breakout.radioactivity.Ball;
+import breakout.radioactivity.NormalBall;
+import breakout.utils.Circle;
+import breakout.utils.Point;
+import breakout.utils.Rect;
+import breakout.utils.Vector;
+
+/**
+ * The games the benchmarks run on, by name: "initMap" ... "initMap4" are the maps of Constants,
+ * "synthetic<n>" is a generated game with n blocks and n balls.
+ */
+final class BenchMaps {
+
+	/**
+	 * The names usable as @Param values.
+	 */
+	static final String INIT_MAP = "initMap";
+	static final String INIT_MAP2 = "initMap2";
+	static final String INIT_MAP3 = "initMap3";
+	static final String INIT_MAP4 = "initMap4";
+	static final String SYNTHETIC = "synthetic";
+
+	static final long SEED = 0xBE4C4L;
+
+	private BenchMaps() { throw new AssertionError("This class is not intended to be instantiated"); }
+
+	/**
+	 * @throws IllegalArgumentException if there is no map with the given name
+	 */
+	static BreakoutState create(String name) {
+		if (name.startsWith(SYNTHETIC)) {
+			return synthetic(Integer.parseInt(name.substring(SYNTHETIC.length())), SEED);
+		}
+		return GameMap.createStateFromDescription(description(name), SEED);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if there is no description with the given name
+	 */
+	static String description(String name) {
+		switch (name) {
+		case INIT_MAP: return Constants.initMap;
+		case INIT_MAP2: return Constants.initMap2;
+		case INIT_MAP3: return Constants.initMap3;
+		case INIT_MAP4: return Constants.initMap4;
+		default: throw new IllegalArgumentException("unknown map " + name);
+		}
+	}
+
+	/**
+	 * A game with n blocks and n balls on a square-ish field that grows with n: the blocks (normal and sturdy ones,
+	 * laid out like GameMap does) fill the top half, the balls start in the bottom half, one per cell, at random
+	 * velocities, and the paddle is at the bottom. Replicator and powerup blocks are left out, so the game only
+	 * exercises finished behavior.
+	 *
+	 * @pre | n > 0
+	 */
+	static BreakoutState synthetic(int n, long seed) {
+		GameRandom random = new GameRandom(seed);
+		int columns = (int) Math.ceil(Math.sqrt(n));
+		int rows = (n + columns - 1) / columns;
+		Point bottomRight = new Point(columns * Constants.BLOCK_WIDTH, (2 * rows + 2) * Constants.BLOCK_HEIGHT);
+
+		BlockState[] blocks = new BlockState[n];
+		Ball[] balls = new Ball[n];
+		for (int i = 0; i < n; ++i) {
+			Point cell = new Point(i % columns * Constants.BLOCK_WIDTH, i / columns * Constants.BLOCK_HEIGHT);
+			Point topLeft = cell.plus(new Vector(20, 20));
+			Point blockBottomRight = topLeft.plus(new Vector(Constants.BLOCK_WIDTH - 70, Constants.BLOCK_HEIGHT - 70));
+			blocks[i] = random.nextInt(4) == 0
+					? new SturdyBlockState(new Rect(topLeft, blockBottomRight), 3)
+					: new NormalBlockState(new Rect(topLeft, blockBottomRight));
+
+			Point center = cell.plus(new Vector(Constants.BLOCK_WIDTH / 2, (rows + 1) * Constants.BLOCK_HEIGHT
+					+ Constants.BLOCK_HEIGHT / 2));
+			Vector velocity = new Vector(random.nextInt(11) - 5, -1 - random.nextInt(5));
+			balls[i] = new NormalBall(new Circle(center, Constants.INIT_BALL_DIAMETER), velocity);
+		}
+		Point paddleCenter = new Point(bottomRight.getX() / 2, bottomRight.getY() - Constants.BLOCK_HEIGHT / 2);
+		PaddleState paddle = new NormalPaddleState(paddleCenter, Constants.TYPICAL_PADDLE_COLORS(),
+				Constants.TYPICAL_PADDLE_COLORS()[0]);
+
+		BreakoutState res = new BreakoutState(blocks, bottomRight, paddle, balls, new Alpha[] {});
+		res.setSeed(seed);
+		return res;
+	}
+
+}
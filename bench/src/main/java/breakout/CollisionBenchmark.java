@@ -0,0 +1,73 @@
+package breakout;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The collision kernels, on the balls and blocks of a game: the broad phase (a grid query per ball) and the narrow
+ * phase (the swept test of every ball against the blocks the grid returns).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CollisionBenchmark {
+
+	@Param({ "initMap", "initMap4", "synthetic10", "synthetic1000", "synthetic100000" })
+	public String map;
+
+	private BlockStore blocks;
+	private BallTable balls;
+
+	@Setup(Level.Trial)
+	public void createGame() {
+		BreakoutState state = BenchMaps.create(map);
+		blocks = new BlockStore(state.getBlocks(), state.getBottomRight());
+		balls = state.getBallTable();
+	}
+
+	@Benchmark
+	public int gridQuery() {
+		int found = 0;
+		for (int i = 0; i < balls.size(); ++i) {
+			int r = balls.getRadius(i);
+			found += blocks.query(balls.getX(i) - r, balls.getY(i) - r, balls.getX(i) + r, balls.getY(i) + r);
+		}
+		return found;
+	}
+
+	@Benchmark
+	public void sweptImpacts(Blackhole blackhole) {
+		for (int i = 0; i < balls.size(); ++i) {
+			int x = balls.getX(i);
+			int y = balls.getY(i);
+			int vx = balls.getVelocityX(i);
+			int vy = balls.getVelocityY(i);
+			int r = balls.getRadius(i);
+			int reachX = Math.abs(vx) * Constants.MAX_ELAPSED_TIME + r;
+			int reachY = Math.abs(vy) * Constants.MAX_ELAPSED_TIME + r;
+			int count = blocks.query(x - reachX, y - reachY, x + reachX, y + reachY);
+			for (int k = 0; k < count; ++k) {
+				int slot = blocks.getCandidate(k);
+				blackhole.consume(SweptCollision.timeOfImpact(x, y, vx, vy, r, blocks.getLeft(slot), blocks.getTop(slot),
+						blocks.getRight(slot), blocks.getBottom(slot), Constants.MAX_ELAPSED_TIME));
+			}
+		}
+	}
+
+}
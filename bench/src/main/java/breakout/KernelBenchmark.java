@@ -0,0 +1,81 @@
+package breakout;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The ball kernels of BallKernel, scalar against VectorBallKernel, on n balls spread over the field.
+ * Moving the balls over and over makes their coordinates wrap around, which costs the same.
+ * The forked JVMs get the jdk.incubator.vector module; without it, the vector benchmarks fail their precondition.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class KernelBenchmark {
+
+	@Param({ "10", "1000", "100000" })
+	public int n;
+
+	private int[] x;
+	private int[] y;
+	private int[] vx;
+	private int[] vy;
+	private int[] diameter;
+	private int[] out;
+
+	@Setup(Level.Trial)
+	public void createBalls() {
+		GameRandom random = new GameRandom(n);
+		x = new int[n];
+		y = new int[n];
+		vx = new int[n];
+		vy = new int[n];
+		diameter = new int[n];
+		out = new int[n];
+		for (int i = 0; i < n; ++i) {
+			x[i] = random.nextInt(Constants.WIDTH);
+			y[i] = random.nextInt(Constants.HEIGHT);
+			vx[i] = random.nextInt(21) - 10;
+			vy[i] = random.nextInt(21) - 10;
+			diameter[i] = Constants.INIT_BALL_DIAMETER;
+		}
+	}
+
+	@Benchmark
+	public int[] integrateScalar() {
+		BallKernel.integrate(x, y, vx, vy, 0, n, Constants.BALL_DELAYMS);
+		return x;
+	}
+
+	@Benchmark
+	public int[] integrateVector() {
+		BallKernel.integrateVector(x, y, vx, vy, n, Constants.BALL_DELAYMS);
+		return x;
+	}
+
+	@Benchmark
+	public int borderScalar() {
+		return BallKernel.borderCandidates(x, y, diameter, 0, n, Constants.WIDTH, Constants.HEIGHT, out, 0);
+	}
+
+	@Benchmark
+	public int borderVector() {
+		return BallKernel.borderCandidatesVector(x, y, diameter, n, Constants.WIDTH, Constants.HEIGHT, out);
+	}
+
+}
@@ -0,0 +1,62 @@
+package breakout;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Painting a game the way Swing does, through GameView.paintComponent, into an offscreen image of the view's
+ * preferred size. The simulation of the view is stopped, so every paint shows the same frame.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+	@Param({ "initMap", "initMap2", "initMap3", "initMap4", "synthetic1000" })
+	public String map;
+
+	private GameView view;
+	private BufferedImage image;
+	private Graphics2D graphics;
+
+	@Setup(Level.Trial)
+	public void createView() {
+		view = new GameView(BenchMaps.create(map));
+		view.stopSimulation();
+		Dimension size = view.getPreferredSize();
+		view.setSize(size);
+		image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+		graphics = image.createGraphics();
+	}
+
+	@TearDown(Level.Trial)
+	public void disposeGraphics() {
+		graphics.dispose();
+	}
+
+	@Benchmark
+	public BufferedImage paintComponent() {
+		view.paintComponent(graphics);
+		return image;
+	}
+
+}
@@ -0,0 +1,101 @@
+package breakout;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import breakout.radioactivity.Alpha;
+import breakout.radioactivity.Ball;
+
+/**
+ * Creating games, the getters that copy (part of) a game: getBlocks, getBalls, getAlphas and getPaddle, and the
+ * counters that answer isWon and isDead without copying anything. isWonAndIsDeadFromGetters answers the same
+ * questions the way isWon and isDead used to, through the copying getters, as a baseline for isWonAndIsDead.
+ * With -prof gc, isWonAndIsDead should report a gc.alloc.rate.norm of 0 bytes per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StateBenchmark {
+
+	@State(Scope.Thread)
+	public static class Description {
+		@Param({ "initMap", "initMap2", "initMap3", "initMap4" })
+		public String map;
+
+		String description;
+
+		@Setup(Level.Trial)
+		public void load() {
+			description = BenchMaps.description(map);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Game {
+		@Param({ "initMap", "initMap2", "initMap3", "initMap4", "synthetic10", "synthetic1000", "synthetic100000" })
+		public String map;
+
+		BreakoutState state;
+
+		@Setup(Level.Trial)
+		public void create() {
+			state = BenchMaps.create(map);
+			// let the balls move away from their initial cells, so handles and arrays differ as in a running game.
+			for (int t = 0; t < 10; ++t) {
+				state.tick(0, Constants.BALL_DELAYMS);
+			}
+		}
+	}
+
+	@Benchmark
+	public BreakoutState createStateFromDescription(Description description) {
+		return GameMap.createStateFromDescription(description.description, BenchMaps.SEED);
+	}
+
+	@Benchmark
+	public BlockState[] getBlocks(Game game) {
+		return game.state.getBlocks();
+	}
+
+	@Benchmark
+	public Ball[] getBalls(Game game) {
+		return game.state.getBalls();
+	}
+
+	@Benchmark
+	public Alpha[] getAlphas(Game game) {
+		return game.state.getAlphas();
+	}
+
+	@Benchmark
+	public PaddleState getPaddle(Game game) {
+		return game.state.getPaddle();
+	}
+
+	@Benchmark
+	public boolean isWonAndIsDead(Game game) {
+		return game.state.isWon() | game.state.isDead();
+	}
+
+	@Benchmark
+	public boolean isWonAndIsDeadFromGetters(Game game) {
+		boolean dead = game.state.getBalls().length == 0;
+		boolean won = game.state.getBlocks().length == 0 && !dead;
+		return won | dead;
+	}
+
+}
@@ -0,0 +1,91 @@
+package breakout;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of advancing a game: one tick as SimulationLoop does it, and tickDuring over several ticks.
+ * The parameters select the stage pipeline or the fused step (fused), the primitive ball arrays or the ball objects
+ * (objectPath, see BreakoutState.setObjectBallPath), and whether the game is profiled (profiling, see
+ * BreakoutState.setProfiling). Profiling must cost less than 2% of a tick: compare profiling=true with
+ * profiling=false at fused=false, since a profiled game always runs the stage pipeline.
+ *
+ * Every iteration starts from a fork of the same game, and a game that ends during an iteration is restarted
+ * from that game, so all iterations measure comparable games.
+ *
+ * Run with -prof gc to check the allocations of a tick: gc.alloc.rate.norm is the number of bytes allocated per
+ * operation. Apart from the new (immutable) locations of the alphas and of the balls that take the object path,
+ * and the occasional restart, a tick should allocate next to nothing: a few hundred bytes per tick on the initMap
+ * games at most. PerformanceTests.TickAllocationTests checks the same budget under "mvn -P allocation test".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickBenchmark {
+
+	@Param({ "initMap", "initMap2", "initMap3", "initMap4", "synthetic10", "synthetic1000", "synthetic100000" })
+	public String map;
+
+	@Param({ "false", "true" })
+	public boolean fused;
+
+	@Param({ "false", "true" })
+	public boolean objectPath;
+
+	@Param({ "false", "true" })
+	public boolean profiling;
+
+	private BreakoutState initial;
+	private BreakoutState state;
+
+	@Setup(Level.Trial)
+	public void createGame() {
+		initial = BenchMaps.create(map);
+		initial.setFusedStep(fused);
+		initial.setObjectBallPath(objectPath);
+	}
+
+	@Setup(Level.Iteration)
+	public void restart() {
+		state = initial.fork();
+		//forks are not profiled
+		state.setProfiling(profiling);
+	}
+
+	private void restartIfOver() {
+		if (state.isDead() || state.isWon()) {
+			restart();
+		}
+	}
+
+	@Benchmark
+	public BreakoutState tick() {
+		state.movePaddleRight(Constants.BALL_DELAYMS);
+		state.tick(1, Constants.BALL_DELAYMS);
+		restartIfOver();
+		return state;
+	}
+
+	@Benchmark
+	public BreakoutState tickDuring() {
+		state.tickDuring(5 * Constants.BALL_DELAYMS);
+		restartIfOver();
+		return state;
+	}
+
+}